@@ -0,0 +1,124 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.dto.ReevaluationStatusDto;
+import com.openclassrooms.tourguide.dto.UserImportReportDto;
+import com.openclassrooms.tourguide.service.RewardsReevaluationJob;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.UserImportService;
+import com.openclassrooms.tourguide.tracker.TrackingPriority;
+import com.openclassrooms.tourguide.user.User;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * TourGuideAdminController provides the operations endpoints, such as changing
+ * the proximity buffer and following the resulting rewards re-evaluation.
+ */
+@RestController
+@RequestMapping("/admin")
+public class TourGuideAdminController {
+
+    @Autowired
+    TourGuideService tourGuideService;
+
+    @Autowired
+    RewardsService rewardsService;
+
+    @Autowired
+    UserImportService userImportService;
+
+    /** * Change the proximity buffer and re-evaluate the rewards of every user owned by this instance.
+     *
+     * @param miles the new proximity buffer in miles
+     * @return the status of the started re-evaluation
+     */
+    @PostMapping("/proximityBuffer")
+    public ReevaluationStatusDto setProximityBuffer(@RequestParam int miles) {
+        if (miles < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The proximity buffer must be positive");
+        }
+        return toStatus(rewardsService.startReevaluation(tourGuideService.getTrackedUsers(), miles));
+    }
+
+    /** * Get the progress of the last rewards re-evaluation.
+     *
+     * @return the status of the re-evaluation
+     */
+    @GetMapping("/reevaluation")
+    public ReevaluationStatusDto getReevaluation() {
+        return toStatus(getReevaluationJob());
+    }
+
+    /** * Cancel the running rewards re-evaluation.
+     *
+     * @return the status of the re-evaluation
+     */
+    @PostMapping("/reevaluation/cancel")
+    public ReevaluationStatusDto cancelReevaluation() {
+        RewardsReevaluationJob job = getReevaluationJob();
+        job.cancel();
+        return toStatus(job);
+    }
+
+    /** * Import users, with their preferences and optional history, from a streamed body.
+     * The body is either NDJSON, one user per line, or CSV with a header line, and is
+     * read as it arrives. Invalid or already existing users are reported by line.
+     * When sharding is enabled, the users owned by other instances are skipped, so the
+     * body is sent to every instance.
+     *
+     * @param request the request, whose body is read as a stream
+     * @return the number of imported and rejected users, and the first errors
+     * @throws IOException if the body cannot be read
+     */
+    @PostMapping(value = "/users/import", consumes = {"application/x-ndjson", "text/csv"})
+    public UserImportReportDto importUsers(HttpServletRequest request) throws IOException {
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        UserImportService.Format format = contentType.isCompatibleWith(MediaType.APPLICATION_NDJSON)
+                ? UserImportService.Format.NDJSON
+                : UserImportService.Format.CSV;
+        try {
+            return userImportService.importUsers(request.getInputStream(), format);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The user import is shutting down");
+        }
+    }
+
+    /** * Change how often the location of a user is polled.
+     *
+     * @param userName the name of the user
+     * @param priority the new tracking priority, HIGH, NORMAL or LOW
+     */
+    @PostMapping("/users/trackingPriority")
+    public void setTrackingPriority(@RequestParam String userName, @RequestParam TrackingPriority priority) {
+        User user = tourGuideService.getUser(userName);
+        if (user == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown user: " + userName);
+        }
+        tourGuideService.setTrackingPriority(user, priority);
+    }
+
+    private RewardsReevaluationJob getReevaluationJob() {
+        RewardsReevaluationJob job = rewardsService.getReevaluationJob();
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No rewards re-evaluation has been started");
+        }
+        return job;
+    }
+
+    private ReevaluationStatusDto toStatus(RewardsReevaluationJob job) {
+        return new ReevaluationStatusDto(job.getState().name(), job.getProximityBuffer(), job.getTotalUsers(),
+                job.getProcessedUsers(), job.getRewardsAdded(), job.getStartedAt(), job.getFinishedAt());
+    }
+}
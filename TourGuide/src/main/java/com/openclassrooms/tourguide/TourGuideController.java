@@ -1,15 +1,35 @@
 package com.openclassrooms.tourguide;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
+import com.openclassrooms.tourguide.analytics.Leaderboard;
+import com.openclassrooms.tourguide.dto.AttractionPopularityDto;
+import com.openclassrooms.tourguide.dto.LeaderboardEntryDto;
 import com.openclassrooms.tourguide.dto.NearbyAttractionDto;
+import com.openclassrooms.tourguide.dto.TripOptionDto;
 import com.openclassrooms.tourguide.mapper.MapperNearbyAttractionDto;
 import com.openclassrooms.tourguide.model.AttractionDistanceFromUser;
 import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TripDealsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import gpsUtil.location.VisitedLocation;
 
@@ -26,6 +46,8 @@ import tripPricer.Provider;
  */
 @RestController
 public class TourGuideController {
+    private static final int MAX_HISTORY_PAGE_SIZE = 1000;
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
 
 	@Autowired
 	TourGuideService tourGuideService;
@@ -35,6 +57,9 @@ public class TourGuideController {
 
     @Autowired
     MapperNearbyAttractionDto mapperNearbyAttractionDto;
+
+    @Autowired
+    ObjectMapper objectMapper;
 	
     @RequestMapping("/")
     public String index() {
@@ -51,6 +76,85 @@ public class TourGuideController {
     	return tourGuideService.getUserLocation(getUser(userName));
     }
 
+    /** * Stream the latest location of every user as NDJSON, one
+     * {"userId","longitude","latitude","timeVisited"} object per line, with the
+     * visit time in epoch milliseconds. The X-Snapshot-Sequence header gives the
+     * value to pass as sinceSequence for the next delta refresh: the users whose
+     * locations changed since then are streamed, whatever the visit time of their
+     * locations, e.g. for imported histories or late fixes. A sequence is only
+     * valid on the instance that returned it.
+     *
+     * @param since only locations visited after this ISO-8601 instant are streamed, all of them if absent
+     * @param sinceSequence only the users whose locations changed after this snapshot sequence are streamed
+     * @return the NDJSON stream
+     */
+    @RequestMapping("/getAllCurrentLocations")
+    public ResponseEntity<StreamingResponseBody> getAllCurrentLocations(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant since,
+            @RequestParam(defaultValue = "0") long sinceSequence) {
+        Instant snapshotTime = Instant.now();
+        // taken before streaming, changes made while streaming are in the next delta
+        long snapshotSequence = User.currentLocationSequence();
+        StreamingResponseBody body = outputStream -> {
+            try (Stream<VisitedLocation> locations = tourGuideService.streamLatestLocations(since != null ? Date.from(since) : null, sinceSequence);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                Iterator<VisitedLocation> iterator = locations.iterator();
+                while (iterator.hasNext()) {
+                    VisitedLocation visitedLocation = iterator.next();
+                    generator.writeStartObject();
+                    generator.writeStringField("userId", visitedLocation.userId.toString());
+                    generator.writeNumberField("longitude", visitedLocation.location.longitude);
+                    generator.writeNumberField("latitude", visitedLocation.location.latitude);
+                    generator.writeNumberField("timeVisited", visitedLocation.timeVisited.getTime());
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .header("X-Snapshot-Time", snapshotTime.toString())
+                .header("X-Snapshot-Sequence", String.valueOf(snapshotSequence))
+                .body(body);
+    }
+
+    /** * Get a page of the locations visited by a user within a time range, oldest first.
+     *
+     * @param userName the name of the user
+     * @param from the start of the range, as an ISO-8601 instant
+     * @param to the end of the range, as an ISO-8601 instant
+     * @param offset the number of locations of the range to skip
+     * @param limit the maximum number of locations to return, up to 1000
+     * @return a list of VisitedLocation objects
+     */
+    @RequestMapping("/getLocationHistory")
+    public List<VisitedLocation> getLocationHistory(@RequestParam String userName,
+                                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                                    @RequestParam(defaultValue = "0") int offset,
+                                                    @RequestParam(defaultValue = "100") int limit) {
+        return tourGuideService.getUserLocationHistory(getUser(userName), Date.from(from), Date.from(to),
+                offset, Math.min(limit, MAX_HISTORY_PAGE_SIZE));
+    }
+
+    /** * Get where a user was at a given time.
+     *
+     * @param userName the name of the user
+     * @param time the time to look up, as an ISO-8601 instant
+     * @return the last VisitedLocation at or before that time
+     */
+    @RequestMapping("/getLocationAt")
+    public VisitedLocation getLocationAt(@RequestParam String userName,
+                                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant time) {
+        VisitedLocation visitedLocation = tourGuideService.getUserLocationAt(getUser(userName), Date.from(time));
+        if (visitedLocation == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No location known at " + time);
+        }
+        return visitedLocation;
+    }
+
     /** * Get nearby attractions for a user.
      *
      * @param userName the name of the user
@@ -86,13 +190,81 @@ public class TourGuideController {
     	return tourGuideService.getTripDeals(getUser(userName));
     }
 
-    /** * Get a user by their username.
+    /** * Get trip options for a user, for their preferences and for a shorter or longer
+     * trip or a different party size, cheapest first.
+     *
+     * @param userName the name of the user
+     * @return a list of TripOptionDto, the variants not priced in time are missing
+     */
+    @RequestMapping("/getTripOptions")
+    public List<TripOptionDto> getTripOptions(@RequestParam String userName) {
+        List<TripOptionDto> tripOptions = new ArrayList<>();
+        for (TripDealsService.TripOption option : tourGuideService.getTripOptions(getUser(userName))) {
+            TripDealsService.Variant variant = option.variant();
+            tripOptions.add(new TripOptionDto(option.providerName(), option.price(), option.tripId(),
+                    variant.tripDuration(), variant.numberOfAdults(), variant.numberOfChildren()));
+        }
+        return tripOptions;
+    }
+
+    /** * Get the users with the most cumulative reward points.
+     *
+     * @param limit the maximum number of users to return
+     * @return a list of LeaderboardEntryDto, best first
+     */
+    @RequestMapping("/getLeaderboard")
+    public List<LeaderboardEntryDto> getLeaderboard(@RequestParam(defaultValue = "10") int limit) {
+        List<Leaderboard.Entry> topEntries = rewardsService.getLeaderboard().getTop(limit);
+        List<LeaderboardEntryDto> leaderboard = new ArrayList<>(topEntries.size());
+        for (int i = 0; i < topEntries.size(); i++) {
+            Leaderboard.Entry entry = topEntries.get(i);
+            // users with the same points share the rank of the first of them
+            long rank = i > 0 && entry.points() == topEntries.get(i - 1).points() ? leaderboard.get(i - 1).getRank() : i + 1;
+            leaderboard.add(new LeaderboardEntryDto(rank, entry.userName(), entry.points()));
+        }
+        return leaderboard;
+    }
+
+    /** * Get the rank of a user in the reward points leaderboard.
+     *
+     * @param userName the name of the user
+     * @return a LeaderboardEntryDto, with a rank of -1 if the user has never been rewarded
+     */
+    @RequestMapping("/getLeaderboardRank")
+    public LeaderboardEntryDto getLeaderboardRank(@RequestParam String userName) {
+        User user = getUser(userName);
+        long rank = rewardsService.getLeaderboard().getRank(user.getUserId());
+        return new LeaderboardEntryDto(rank, user.getUserName(), user.getCumulativeRewardPoints());
+    }
+
+    /** * Get the visit and reward counts of every attraction, most visited first.
+     *
+     * @param windowHours the number of recent hours to aggregate, up to 24
+     * @return a list of AttractionPopularityDto
+     */
+    @RequestMapping("/getAttractionPopularity")
+    public List<AttractionPopularityDto> getAttractionPopularity(@RequestParam(defaultValue = "24") int windowHours) {
+        return rewardsService.getAttractionPopularity()
+                .getPopularity(Duration.ofHours(windowHours), System.currentTimeMillis())
+                .stream()
+                .map(popularity -> new AttractionPopularityDto(popularity.attractionName(), popularity.visits(),
+                        popularity.rewards(), popularity.windowVisits(), popularity.windowRewards(),
+                        popularity.uniqueVisitors()))
+                .toList();
+    }
+
+    /** * Get a user by their username and record the API activity used by the tracker
+     * to adapt the user's polling frequency.
      *
      * @param userName the name of the user
      * @return the User object corresponding to the given username
      */
     private User getUser(String userName) {
-    	return tourGuideService.getUser(userName);
+        User user = tourGuideService.getUser(userName);
+        if (user != null) {
+            tourGuideService.markUserActive(user);
+        }
+    	return user;
     }
 
 }
\ No newline at end of file
@@ -5,6 +5,8 @@ import org.springframework.context.annotation.Configuration;
 
 import gpsUtil.GpsUtil;
 import rewardCentral.RewardCentral;
+import com.fasterxml.jackson.databind.Module;
+import com.openclassrooms.tourguide.json.TourGuideJsonModule;
 import com.openclassrooms.tourguide.service.RewardsService;
 
 @Configuration
@@ -24,5 +26,10 @@ public class TourGuideModule {
 	public RewardCentral getRewardCentral() {
 		return new RewardCentral();
 	}
+
+	@Bean
+	public Module getTourGuideJsonModule() {
+		return new TourGuideJsonModule();
+	}
 	
 }
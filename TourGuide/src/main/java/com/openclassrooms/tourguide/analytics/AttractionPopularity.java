@@ -0,0 +1,138 @@
+package com.openclassrooms.tourguide.analytics;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import gpsUtil.location.Attraction;
+
+/**
+ * AttractionPopularity counts visits and rewards per attraction as they happen,
+ * so that popularity can be read without walking the users' history.
+ * Counters are LongAdders, which stay cheap under contention from the tracker
+ * threads. Besides all-time totals, counts and unique visitors are kept in a
+ * ring of hourly buckets covering the last {@value #WINDOW_HOURS} hours.
+ * Attractions are keyed by name, which is stable across catalog fetches.
+ */
+public class AttractionPopularity {
+    static final int WINDOW_HOURS = 24;
+    private static final long BUCKET_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final ConcurrentMap<String, Counters> totals = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<>(WINDOW_HOURS);
+
+    /**
+     * Records that a user has been located near an attraction.
+     *
+     * @param attraction the visited attraction
+     * @param userId     the id of the visitor
+     * @param time       the time of the visit in milliseconds
+     */
+    public void recordVisit(Attraction attraction, UUID userId, long time) {
+        totals.computeIfAbsent(attraction.attractionName, name -> new Counters()).visits.increment();
+        Counters counters = bucketAt(time).counters(attraction.attractionName);
+        counters.visits.increment();
+        counters.visitors.add(userId);
+    }
+
+    /**
+     * Records that a user has been rewarded for an attraction.
+     *
+     * @param attraction the rewarded attraction
+     * @param time       the time of the reward in milliseconds
+     */
+    public void recordReward(Attraction attraction, long time) {
+        totals.computeIfAbsent(attraction.attractionName, name -> new Counters()).rewards.increment();
+        bucketAt(time).counters(attraction.attractionName).rewards.increment();
+    }
+
+    /**
+     * Gets the popularity of every attraction seen so far, most visited first
+     * over the window.
+     *
+     * @param window the window to aggregate, capped to {@value #WINDOW_HOURS} hours
+     * @param now    the current time in milliseconds
+     * @return the popularity of each attraction
+     */
+    public List<Popularity> getPopularity(Duration window, long now) {
+        long windowStart = now - Math.min(window.toMillis(), WINDOW_HOURS * BUCKET_MILLIS);
+        return totals.entrySet().stream()
+                .map(total -> aggregate(total.getKey(), total.getValue(), windowStart, now))
+                .sorted(Comparator.comparingLong(Popularity::windowVisits).reversed()
+                        .thenComparing(Popularity::attractionName))
+                .toList();
+    }
+
+    private Popularity aggregate(String attractionName, Counters total, long windowStart, long now) {
+        long windowVisits = 0;
+        long windowRewards = 0;
+        Set<UUID> visitors = new HashSet<>();
+        for (int i = 0; i < WINDOW_HOURS; i++) {
+            Bucket bucket = buckets.get(i);
+            // a bucket belongs to the window if any part of its hour does
+            if (bucket == null || bucket.start + BUCKET_MILLIS <= windowStart || bucket.start > now) {
+                continue;
+            }
+            Counters counters = bucket.counters.get(attractionName);
+            if (counters != null) {
+                windowVisits += counters.visits.sum();
+                windowRewards += counters.rewards.sum();
+                visitors.addAll(counters.visitors);
+            }
+        }
+        return new Popularity(attractionName, total.visits.sum(), total.rewards.sum(),
+                windowVisits, windowRewards, visitors.size());
+    }
+
+    /**
+     * Gets the bucket of the hour containing the given time, recycling the slot
+     * of the hour that fell out of the window.
+     */
+    private Bucket bucketAt(long time) {
+        long start = time - Math.floorMod(time, BUCKET_MILLIS);
+        int index = (int) Math.floorMod(start / BUCKET_MILLIS, (long) WINDOW_HOURS);
+        while (true) {
+            Bucket bucket = buckets.get(index);
+            if (bucket != null && bucket.start >= start) {
+                // late records for an hour already recycled are counted in the newer hour
+                return bucket;
+            }
+            Bucket fresh = new Bucket(start);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private static class Counters {
+        final LongAdder visits = new LongAdder();
+        final LongAdder rewards = new LongAdder();
+        final Set<UUID> visitors = ConcurrentHashMap.newKeySet();
+    }
+
+    private static class Bucket {
+        final long start;
+        final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+        Bucket(long start) {
+            this.start = start;
+        }
+
+        Counters counters(String attractionName) {
+            return counters.computeIfAbsent(attractionName, name -> new Counters());
+        }
+    }
+
+    public record Popularity(String attractionName, long visits, long rewards,
+                             long windowVisits, long windowRewards, long uniqueVisitors) {
+    }
+}
@@ -0,0 +1,172 @@
+package com.openclassrooms.tourguide.analytics;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Leaderboard ranks users by cumulative reward points. It is updated each time
+ * a user is rewarded and answers its queries without scanning the users:
+ * <ul>
+ * <li>top-N reads walk a concurrent skip list sorted by points, in O(log n + N)</li>
+ * <li>ranks are counted from a Fenwick tree of users per points value, in
+ * O(log maxPoints)</li>
+ * </ul>
+ * The tree grows with the points up to a maximum capacity. The few users above
+ * it are ranked by walking the skip list instead.
+ */
+public class Leaderboard {
+    private static final int INITIAL_POINTS_CAPACITY = 1 << 16;
+    private static final int MAX_POINTS_CAPACITY = 1 << 24;
+
+    private final NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>(
+            Comparator.comparingInt(Entry::points).reversed().thenComparing(Entry::userId));
+    private final ConcurrentMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+    // updates share the read lock, only growing the tree takes the write lock so
+    // that it is rebuilt from entries no update is in the middle of
+    private final ReadWriteLock countsLock = new ReentrantReadWriteLock();
+    private volatile AtomicLongArray counts = new AtomicLongArray(INITIAL_POINTS_CAPACITY + 1);
+
+    /**
+     * Moves a user to its current cumulative reward points.
+     *
+     * @param user the user whose points changed
+     */
+    public void update(User user) {
+        boolean[] outgrown = new boolean[1];
+        do {
+            ensureCapacity(user.getCumulativeRewardPoints());
+            outgrown[0] = false;
+            countsLock.readLock().lock();
+            try {
+                entries.compute(user.getUserId(), (userId, previous) -> {
+                    // read under the entry lock, so that a late update cannot restore older points
+                    int points = user.getCumulativeRewardPoints();
+                    if (treeIndex(points) >= counts.length() - 1) {
+                        outgrown[0] = true;
+                        return previous;
+                    }
+                    if (previous != null) {
+                        if (previous.points() == points) {
+                            return previous;
+                        }
+                        ranking.remove(previous);
+                        addCount(previous.points(), -1);
+                    }
+                    Entry entry = new Entry(userId, user.getUserName(), points);
+                    ranking.add(entry);
+                    addCount(points, 1);
+                    return entry;
+                });
+            } finally {
+                countsLock.readLock().unlock();
+            }
+        } while (outgrown[0]);
+    }
+
+    /**
+     * Gets the users with the most reward points.
+     *
+     * @param limit the maximum number of users to return, none if negative
+     * @return the top users, best first
+     */
+    public List<Entry> getTop(int limit) {
+        return ranking.stream().limit(Math.max(limit, 0)).toList();
+    }
+
+    /**
+     * Gets the rank of a user, 1 being the best. Users with the same points share the same rank.
+     *
+     * @param userId the id of the user
+     * @return the rank of the user, or -1 if the user has never been rewarded
+     */
+    public long getRank(UUID userId) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            return -1;
+        }
+        if (entry.points() >= MAX_POINTS_CAPACITY) {
+            return 1 + ranking.stream().takeWhile(other -> other.points() > entry.points()).count();
+        }
+        countsLock.readLock().lock();
+        try {
+            return 1 + entries.size() - prefixCount(entry.points());
+        } finally {
+            countsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the entry of a user.
+     *
+     * @param userId the id of the user
+     * @return the entry of the user, or null if the user has never been rewarded
+     */
+    public Entry getEntry(UUID userId) {
+        return entries.get(userId);
+    }
+
+    private void addCount(int points, long delta) {
+        AtomicLongArray tree = counts;
+        for (int i = treeIndex(points) + 1; i < tree.length(); i += i & -i) {
+            tree.addAndGet(i, delta);
+        }
+    }
+
+    /**
+     * Counts the users having at most the given points.
+     */
+    private long prefixCount(int points) {
+        AtomicLongArray tree = counts;
+        long count = 0;
+        for (int i = Math.min(points + 1, tree.length() - 1); i > 0; i -= i & -i) {
+            count += tree.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Index of the points in the tree, users beyond the maximum capacity share the last one.
+     */
+    private static int treeIndex(int points) {
+        return Math.min(points, MAX_POINTS_CAPACITY - 1);
+    }
+
+    private void ensureCapacity(int points) {
+        int index = treeIndex(points);
+        if (index < counts.length() - 1) {
+            return;
+        }
+        countsLock.writeLock().lock();
+        try {
+            int capacity = counts.length() - 1;
+            while (index >= capacity) {
+                capacity *= 2;
+            }
+            if (capacity == counts.length() - 1) {
+                return;
+            }
+            AtomicLongArray tree = new AtomicLongArray(capacity + 1);
+            for (Entry entry : entries.values()) {
+                for (int i = treeIndex(entry.points()) + 1; i < tree.length(); i += i & -i) {
+                    tree.incrementAndGet(i);
+                }
+            }
+            counts = tree;
+        } finally {
+            countsLock.writeLock().unlock();
+        }
+    }
+
+    public record Entry(UUID userId, String userName, int points) {
+    }
+}
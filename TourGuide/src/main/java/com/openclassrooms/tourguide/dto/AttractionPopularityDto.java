@@ -0,0 +1,71 @@
+package com.openclassrooms.tourguide.dto;
+
+/**
+ * AttractionPopularityDto represents how often an attraction is visited and rewarded,
+ * in total and over a recent time window.
+ */
+public class AttractionPopularityDto {
+    private String attractionName;
+    private long visits;
+    private long rewards;
+    private long windowVisits;
+    private long windowRewards;
+    private long uniqueVisitors;
+
+    public AttractionPopularityDto(String attractionName, long visits, long rewards, long windowVisits, long windowRewards, long uniqueVisitors) {
+        this.attractionName = attractionName;
+        this.visits = visits;
+        this.rewards = rewards;
+        this.windowVisits = windowVisits;
+        this.windowRewards = windowRewards;
+        this.uniqueVisitors = uniqueVisitors;
+    }
+
+    public String getAttractionName() {
+        return attractionName;
+    }
+
+    public void setAttractionName(String attractionName) {
+        this.attractionName = attractionName;
+    }
+
+    public long getVisits() {
+        return visits;
+    }
+
+    public void setVisits(long visits) {
+        this.visits = visits;
+    }
+
+    public long getRewards() {
+        return rewards;
+    }
+
+    public void setRewards(long rewards) {
+        this.rewards = rewards;
+    }
+
+    public long getWindowVisits() {
+        return windowVisits;
+    }
+
+    public void setWindowVisits(long windowVisits) {
+        this.windowVisits = windowVisits;
+    }
+
+    public long getWindowRewards() {
+        return windowRewards;
+    }
+
+    public void setWindowRewards(long windowRewards) {
+        this.windowRewards = windowRewards;
+    }
+
+    public long getUniqueVisitors() {
+        return uniqueVisitors;
+    }
+
+    public void setUniqueVisitors(long uniqueVisitors) {
+        this.uniqueVisitors = uniqueVisitors;
+    }
+}
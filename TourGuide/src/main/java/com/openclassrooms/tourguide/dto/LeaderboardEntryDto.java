@@ -0,0 +1,40 @@
+package com.openclassrooms.tourguide.dto;
+
+/**
+ * LeaderboardEntryDto represents the position of a user in the reward points leaderboard.
+ */
+public class LeaderboardEntryDto {
+    private long rank;
+    private String userName;
+    private int rewardPoints;
+
+    public LeaderboardEntryDto(long rank, String userName, int rewardPoints) {
+        this.rank = rank;
+        this.userName = userName;
+        this.rewardPoints = rewardPoints;
+    }
+
+    public long getRank() {
+        return rank;
+    }
+
+    public void setRank(long rank) {
+        this.rank = rank;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public int getRewardPoints() {
+        return rewardPoints;
+    }
+
+    public void setRewardPoints(int rewardPoints) {
+        this.rewardPoints = rewardPoints;
+    }
+}
@@ -12,9 +12,10 @@ public class NearbyAttractionDto {
     private Double latitudeUser;
     private Double longitudeUser;
     private Double distance;
-    private int rewardPoints;
+    // null when the points could not be obtained in time
+    private Integer rewardPoints;
 
-    public NearbyAttractionDto(String name, Double latitude, Double longitude, Double latitudeUser, Double longitudeUser, Double distance, int rewardPoints) {
+    public NearbyAttractionDto(String name, Double latitude, Double longitude, Double latitudeUser, Double longitudeUser, Double distance, Integer rewardPoints) {
         this.name = name;
         this.latitude = latitude;
         this.longitude = longitude;
@@ -72,11 +73,11 @@ public class NearbyAttractionDto {
         this.distance = distance;
     }
 
-    public int getRewardPoints() {
+    public Integer getRewardPoints() {
         return rewardPoints;
     }
 
-    public void setRewardPoints(int rewardPoints) {
+    public void setRewardPoints(Integer rewardPoints) {
         this.rewardPoints = rewardPoints;
     }
 }
@@ -0,0 +1,80 @@
+package com.openclassrooms.tourguide.dto;
+
+/**
+ * ReevaluationStatusDto represents the progress of a bulk rewards re-evaluation.
+ */
+public class ReevaluationStatusDto {
+    private String state;
+    private int proximityBuffer;
+    private int totalUsers;
+    private int processedUsers;
+    private long rewardsAdded;
+    private long startedAt;
+    private long finishedAt;
+
+    public ReevaluationStatusDto(String state, int proximityBuffer, int totalUsers, int processedUsers, long rewardsAdded, long startedAt, long finishedAt) {
+        this.state = state;
+        this.proximityBuffer = proximityBuffer;
+        this.totalUsers = totalUsers;
+        this.processedUsers = processedUsers;
+        this.rewardsAdded = rewardsAdded;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public int getProximityBuffer() {
+        return proximityBuffer;
+    }
+
+    public void setProximityBuffer(int proximityBuffer) {
+        this.proximityBuffer = proximityBuffer;
+    }
+
+    public int getTotalUsers() {
+        return totalUsers;
+    }
+
+    public void setTotalUsers(int totalUsers) {
+        this.totalUsers = totalUsers;
+    }
+
+    public int getProcessedUsers() {
+        return processedUsers;
+    }
+
+    public void setProcessedUsers(int processedUsers) {
+        this.processedUsers = processedUsers;
+    }
+
+    public long getRewardsAdded() {
+        return rewardsAdded;
+    }
+
+    public void setRewardsAdded(long rewardsAdded) {
+        this.rewardsAdded = rewardsAdded;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(long startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
@@ -0,0 +1,73 @@
+package com.openclassrooms.tourguide.dto;
+
+import java.util.UUID;
+
+/**
+ * TripOptionDto represents a trip offer of a provider for one variant of the
+ * preferences of a user, such as a longer trip or a different party size.
+ */
+public class TripOptionDto {
+    private String providerName;
+    private double price;
+    private UUID tripId;
+    private int tripDuration;
+    private int numberOfAdults;
+    private int numberOfChildren;
+
+    public TripOptionDto(String providerName, double price, UUID tripId, int tripDuration, int numberOfAdults, int numberOfChildren) {
+        this.providerName = providerName;
+        this.price = price;
+        this.tripId = tripId;
+        this.tripDuration = tripDuration;
+        this.numberOfAdults = numberOfAdults;
+        this.numberOfChildren = numberOfChildren;
+    }
+
+    public String getProviderName() {
+        return providerName;
+    }
+
+    public void setProviderName(String providerName) {
+        this.providerName = providerName;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public void setPrice(double price) {
+        this.price = price;
+    }
+
+    public UUID getTripId() {
+        return tripId;
+    }
+
+    public void setTripId(UUID tripId) {
+        this.tripId = tripId;
+    }
+
+    public int getTripDuration() {
+        return tripDuration;
+    }
+
+    public void setTripDuration(int tripDuration) {
+        this.tripDuration = tripDuration;
+    }
+
+    public int getNumberOfAdults() {
+        return numberOfAdults;
+    }
+
+    public void setNumberOfAdults(int numberOfAdults) {
+        this.numberOfAdults = numberOfAdults;
+    }
+
+    public int getNumberOfChildren() {
+        return numberOfChildren;
+    }
+
+    public void setNumberOfChildren(int numberOfChildren) {
+        this.numberOfChildren = numberOfChildren;
+    }
+}
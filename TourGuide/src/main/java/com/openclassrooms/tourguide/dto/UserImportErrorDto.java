@@ -0,0 +1,30 @@
+package com.openclassrooms.tourguide.dto;
+
+/**
+ * UserImportErrorDto describes a row of a bulk user import that was rejected.
+ */
+public class UserImportErrorDto {
+    private long line;
+    private String message;
+
+    public UserImportErrorDto(long line, String message) {
+        this.line = line;
+        this.message = message;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public void setLine(long line) {
+        this.line = line;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
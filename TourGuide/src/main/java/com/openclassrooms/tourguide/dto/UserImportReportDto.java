@@ -0,0 +1,54 @@
+package com.openclassrooms.tourguide.dto;
+
+import java.util.List;
+
+/**
+ * UserImportReportDto summarizes a bulk user import. Only the first rejected
+ * rows are detailed, the count covers all of them. The skipped rows are the
+ * valid ones of users owned by another instance, when sharding is enabled.
+ */
+public class UserImportReportDto {
+    private long imported;
+    private long rejected;
+    private long skipped;
+    private List<UserImportErrorDto> errors;
+
+    public UserImportReportDto(long imported, long rejected, long skipped, List<UserImportErrorDto> errors) {
+        this.imported = imported;
+        this.rejected = rejected;
+        this.skipped = skipped;
+        this.errors = errors;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public void setSkipped(long skipped) {
+        this.skipped = skipped;
+    }
+
+    public List<UserImportErrorDto> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<UserImportErrorDto> errors) {
+        this.errors = errors;
+    }
+}
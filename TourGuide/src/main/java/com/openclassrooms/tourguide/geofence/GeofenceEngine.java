@@ -0,0 +1,201 @@
+package com.openclassrooms.tourguide.geofence;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.service.AttractionCatalog;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * GeofenceEngine detects when users enter or leave the zone of an attraction,
+ * a zone being the proximity buffer of the RewardsService around it.
+ * Zones are indexed by the cells of a latitude/longitude grid they overlap, so
+ * that each new location is only checked against the zones of its cell. The
+ * index is rebuilt when the attraction catalog version or the proximity buffer
+ * changes. The zones each user is in are kept between locations, and every
+ * transition is sent to the listeners.
+ */
+public class GeofenceEngine {
+    private static final Logger logger = LoggerFactory.getLogger(GeofenceEngine.class);
+    private static final double CELL_SIZE_DEGREES = 0.25;
+    private static final int COLUMNS = (int) Math.round(360 / CELL_SIZE_DEGREES);
+    private static final double MILES_PER_DEGREE = 69.0;
+    // margin on the covered cells, for the approximation of miles per degree
+    private static final double COVER_MARGIN = 1.1;
+    private static final long MAX_CELLS_PER_ZONE = 10000;
+
+    private final RewardsService rewardsService;
+    private final List<GeofenceListener> listeners = new CopyOnWriteArrayList<>();
+    // names of the zones each user is in, attraction ids change between catalog versions
+    private final Map<UUID, Set<String>> userZones = new ConcurrentHashMap<>();
+    private final LongAdder events = new LongAdder();
+    private volatile Index index;
+
+    public GeofenceEngine(RewardsService rewardsService) {
+        this.rewardsService = rewardsService;
+    }
+
+    public void addListener(GeofenceListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(GeofenceListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Checks a new location of a user against the zones of its cell and sends
+     * the resulting transitions to the listeners.
+     *
+     * @param visitedLocation the new location of the user
+     * @return the transitions, in no particular order
+     */
+    public List<GeofenceEvent> onLocation(VisitedLocation visitedLocation) {
+        Index current = currentIndex();
+        Map<String, Attraction> inside = new HashMap<>();
+        for (int attractionIndex : current.zonesOf(visitedLocation.location.latitude, visitedLocation.location.longitude)) {
+            Attraction attraction = current.attractions.get(attractionIndex);
+            if (rewardsService.getDistance(attraction, visitedLocation.location) <= current.radius) {
+                inside.put(attraction.attractionName, attraction);
+            }
+        }
+
+        List<GeofenceEvent> transitions = new ArrayList<>();
+        userZones.compute(visitedLocation.userId, (userId, previous) -> {
+            Set<String> before = previous != null ? previous : Set.of();
+            inside.forEach((name, attraction) -> {
+                if (!before.contains(name)) {
+                    transitions.add(new GeofenceEvent(GeofenceEvent.Type.ENTER, userId, attraction, visitedLocation));
+                }
+            });
+            for (String name : before) {
+                if (!inside.containsKey(name)) {
+                    transitions.add(new GeofenceEvent(GeofenceEvent.Type.EXIT, userId, current.byName(name), visitedLocation));
+                }
+            }
+            return inside.isEmpty() ? null : Set.copyOf(inside.keySet());
+        });
+
+        for (GeofenceEvent event : transitions) {
+            events.increment();
+            for (GeofenceListener listener : listeners) {
+                try {
+                    listener.onEvent(event);
+                } catch (RuntimeException e) {
+                    logger.error("Geofence listener failed on {}", event, e);
+                }
+            }
+        }
+        return transitions;
+    }
+
+    /**
+     * Gets the names of the attraction zones a user is currently in.
+     *
+     * @param userId the id of the user
+     * @return the attraction names
+     */
+    public Set<String> getZones(UUID userId) {
+        return userZones.getOrDefault(userId, Set.of());
+    }
+
+    public long getEventCount() {
+        return events.sum();
+    }
+
+    private Index currentIndex() {
+        AttractionCatalog.Snapshot catalog = rewardsService.getAttractionCatalog().current();
+        int radius = rewardsService.getProximityBuffer();
+        Index current = index;
+        if (current == null || current.catalogVersion != catalog.version() || current.radius != radius) {
+            synchronized (this) {
+                current = index;
+                if (current == null || current.catalogVersion != catalog.version() || current.radius != radius) {
+                    current = new Index(catalog, radius);
+                    index = current;
+                    logger.debug("Geofence index rebuilt for catalog version {} and a radius of {} miles", catalog.version(), radius);
+                }
+            }
+        }
+        return current;
+    }
+
+    private static long cellOf(long row, long column) {
+        return (row << 32) | (Math.floorMod(column, COLUMNS) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Cell to zones map of one catalog version and radius.
+     */
+    private static class Index {
+        private final long catalogVersion;
+        private final int radius;
+        private final List<Attraction> attractions;
+        private final Map<Long, int[]> cells = new HashMap<>();
+        // zones too large to be indexed by cell, checked for every location
+        private final int[] globalZones;
+
+        Index(AttractionCatalog.Snapshot catalog, int radius) {
+            this.catalogVersion = catalog.version();
+            this.radius = radius;
+            this.attractions = catalog.attractions();
+
+            Map<Long, List<Integer>> zones = new HashMap<>();
+            List<Integer> global = new ArrayList<>();
+            for (int i = 0; i < attractions.size(); i++) {
+                Attraction attraction = attractions.get(i);
+                double latitudeDelta = radius / MILES_PER_DEGREE * COVER_MARGIN;
+                double farthestLatitude = Math.min(89.9, Math.abs(attraction.latitude) + latitudeDelta);
+                double longitudeDelta = Math.min(180, latitudeDelta / Math.cos(Math.toRadians(farthestLatitude)));
+                long firstRow = (long) Math.floor(Math.max(-90, attraction.latitude - latitudeDelta) / CELL_SIZE_DEGREES);
+                long lastRow = (long) Math.floor(Math.min(90, attraction.latitude + latitudeDelta) / CELL_SIZE_DEGREES);
+                long firstColumn = (long) Math.floor((attraction.longitude - longitudeDelta) / CELL_SIZE_DEGREES);
+                long lastColumn = Math.min(firstColumn + COLUMNS - 1,
+                        (long) Math.floor((attraction.longitude + longitudeDelta) / CELL_SIZE_DEGREES));
+                if ((lastRow - firstRow + 1) * (lastColumn - firstColumn + 1) > MAX_CELLS_PER_ZONE) {
+                    global.add(i);
+                    continue;
+                }
+                for (long row = firstRow; row <= lastRow; row++) {
+                    for (long column = firstColumn; column <= lastColumn; column++) {
+                        zones.computeIfAbsent(cellOf(row, column), cell -> new ArrayList<>()).add(i);
+                    }
+                }
+            }
+            this.globalZones = global.stream().mapToInt(Integer::intValue).toArray();
+            zones.forEach((cell, attractionIndexes) -> {
+                attractionIndexes.addAll(global);
+                cells.put(cell, attractionIndexes.stream().mapToInt(Integer::intValue).toArray());
+            });
+        }
+
+        int[] zonesOf(double latitude, double longitude) {
+            long row = (long) Math.floor(latitude / CELL_SIZE_DEGREES);
+            long column = (long) Math.floor(longitude / CELL_SIZE_DEGREES);
+            return cells.getOrDefault(cellOf(row, column), globalZones);
+        }
+
+        Attraction byName(String name) {
+            for (Attraction attraction : attractions) {
+                if (attraction.attractionName.equals(name)) {
+                    return attraction;
+                }
+            }
+            // the attraction left the catalog, the event still names it
+            return new Attraction(name, "", "", 0, 0);
+        }
+    }
+}
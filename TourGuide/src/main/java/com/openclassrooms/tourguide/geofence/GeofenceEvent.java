@@ -0,0 +1,19 @@
+package com.openclassrooms.tourguide.geofence;
+
+import java.util.UUID;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * GeofenceEvent tells that a user entered or left the zone of an attraction.
+ *
+ * @param type       whether the user entered or left the zone
+ * @param userId     the id of the user
+ * @param attraction the attraction of the zone
+ * @param location   the location that triggered the transition
+ */
+public record GeofenceEvent(Type type, UUID userId, Attraction attraction, VisitedLocation location) {
+
+    public enum Type { ENTER, EXIT }
+}
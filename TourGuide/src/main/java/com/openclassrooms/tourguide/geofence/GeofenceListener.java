@@ -0,0 +1,11 @@
+package com.openclassrooms.tourguide.geofence;
+
+/**
+ * GeofenceListener receives the geofence transitions of every user. Listeners
+ * are called on the tracking thread and should hand long work off.
+ */
+@FunctionalInterface
+public interface GeofenceListener {
+
+    void onEvent(GeofenceEvent event);
+}
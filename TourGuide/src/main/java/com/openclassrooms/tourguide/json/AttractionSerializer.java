@@ -0,0 +1,78 @@
+package com.openclassrooms.tourguide.json;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import gpsUtil.location.Attraction;
+
+/**
+ * AttractionSerializer writes attractions from pre-encoded fragments.
+ * Everything but the attraction id is immutable catalog data, so it is encoded
+ * once per attraction name and copied as raw JSON afterwards.
+ */
+public class AttractionSerializer extends StdSerializer<Attraction> {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final Map<String, EncodedAttraction> fragments = new ConcurrentHashMap<>();
+
+    public AttractionSerializer() {
+        super(Attraction.class);
+    }
+
+    @Override
+    public void serialize(Attraction attraction, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("attractionId", Objects.toString(attraction.attractionId, null));
+        gen.writeRaw(getFragment(attraction));
+        gen.writeEndObject();
+    }
+
+    private String getFragment(Attraction attraction) {
+        EncodedAttraction encoded = fragments.get(attraction.attractionName);
+        if (encoded == null || !encoded.matches(attraction)) {
+            encoded = new EncodedAttraction(attraction, encode(attraction));
+            fragments.put(attraction.attractionName, encoded);
+        }
+        return encoded.fragment();
+    }
+
+    /**
+     * Encodes the immutable fields of an attraction as the continuation of an
+     * object whose first field has already been written.
+     */
+    private static String encode(Attraction attraction) {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator gen = JSON_FACTORY.createGenerator(writer)) {
+            gen.writeStartObject();
+            gen.writeNumberField("longitude", attraction.longitude);
+            gen.writeNumberField("latitude", attraction.latitude);
+            gen.writeStringField("attractionName", attraction.attractionName);
+            gen.writeStringField("city", attraction.city);
+            gen.writeStringField("state", attraction.state);
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Error encoding attraction " + attraction.attractionName, e);
+        }
+        String json = writer.toString();
+        // drop the braces and prefix a separator: ,"longitude":...,"state":"..."
+        return "," + json.substring(1, json.length() - 1);
+    }
+
+    private record EncodedAttraction(Attraction source, String fragment) {
+        boolean matches(Attraction attraction) {
+            return source == attraction
+                    || (source.longitude == attraction.longitude
+                    && source.latitude == attraction.latitude
+                    && Objects.equals(source.city, attraction.city)
+                    && Objects.equals(source.state, attraction.state));
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.openclassrooms.tourguide.json;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import com.openclassrooms.tourguide.dto.NearbyAttractionDto;
+
+/**
+ * NearbyAttractionDtoSerializer writes nearby attractions without reflection.
+ */
+public class NearbyAttractionDtoSerializer extends StdSerializer<NearbyAttractionDto> {
+
+    public NearbyAttractionDtoSerializer() {
+        super(NearbyAttractionDto.class);
+    }
+
+    @Override
+    public void serialize(NearbyAttractionDto dto, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("name", dto.getName());
+        writeNumberField(gen, "latitude", dto.getLatitude());
+        writeNumberField(gen, "longitude", dto.getLongitude());
+        writeNumberField(gen, "latitudeUser", dto.getLatitudeUser());
+        writeNumberField(gen, "longitudeUser", dto.getLongitudeUser());
+        writeNumberField(gen, "distance", dto.getDistance());
+        if (dto.getRewardPoints() == null) {
+            gen.writeNullField("rewardPoints");
+        } else {
+            gen.writeNumberField("rewardPoints", dto.getRewardPoints());
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writeNumberField(JsonGenerator gen, String fieldName, Double value) throws IOException {
+        if (value == null) {
+            gen.writeNullField(fieldName);
+        } else {
+            gen.writeNumberField(fieldName, value);
+        }
+    }
+}
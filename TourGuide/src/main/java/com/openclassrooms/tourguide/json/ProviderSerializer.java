@@ -0,0 +1,29 @@
+package com.openclassrooms.tourguide.json;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import tripPricer.Provider;
+
+/**
+ * ProviderSerializer writes trip deal providers without reflection.
+ */
+public class ProviderSerializer extends StdSerializer<Provider> {
+
+    public ProviderSerializer() {
+        super(Provider.class);
+    }
+
+    @Override
+    public void serialize(Provider provider, JsonGenerator gen, SerializerProvider serializerProvider) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("name", provider.name);
+        gen.writeNumberField("price", provider.price);
+        gen.writeStringField("tripId", Objects.toString(provider.tripId, null));
+        gen.writeEndObject();
+    }
+}
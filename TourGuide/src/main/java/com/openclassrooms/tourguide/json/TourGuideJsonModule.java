@@ -0,0 +1,30 @@
+package com.openclassrooms.tourguide.json;
+
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import com.openclassrooms.tourguide.dto.NearbyAttractionDto;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import tripPricer.Provider;
+
+/**
+ * TourGuideJsonModule registers the hand-written serializers of the types
+ * returned by the hottest endpoints, so that Jackson does not introspect them
+ * by reflection. Lists of these types are still written element by element
+ * straight to the response stream.
+ */
+public class TourGuideJsonModule extends SimpleModule {
+
+    public TourGuideJsonModule() {
+        super("TourGuideJsonModule");
+        AttractionSerializer attractionSerializer = new AttractionSerializer();
+        VisitedLocationSerializer visitedLocationSerializer = new VisitedLocationSerializer();
+        addSerializer(Attraction.class, attractionSerializer);
+        addSerializer(VisitedLocation.class, visitedLocationSerializer);
+        addSerializer(UserReward.class, new UserRewardSerializer(visitedLocationSerializer, attractionSerializer));
+        addSerializer(Provider.class, new ProviderSerializer());
+        addSerializer(NearbyAttractionDto.class, new NearbyAttractionDtoSerializer());
+    }
+}
@@ -0,0 +1,44 @@
+package com.openclassrooms.tourguide.json;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import com.openclassrooms.tourguide.user.UserReward;
+
+/**
+ * UserRewardSerializer writes user rewards without reflection, delegating the
+ * nested visited location and attraction to their dedicated serializers.
+ */
+public class UserRewardSerializer extends StdSerializer<UserReward> {
+    private final VisitedLocationSerializer visitedLocationSerializer;
+    private final AttractionSerializer attractionSerializer;
+
+    public UserRewardSerializer(VisitedLocationSerializer visitedLocationSerializer, AttractionSerializer attractionSerializer) {
+        super(UserReward.class);
+        this.visitedLocationSerializer = visitedLocationSerializer;
+        this.attractionSerializer = attractionSerializer;
+    }
+
+    @Override
+    public void serialize(UserReward userReward, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName("visitedLocation");
+        if (userReward.visitedLocation == null) {
+            gen.writeNull();
+        } else {
+            visitedLocationSerializer.serialize(userReward.visitedLocation, gen, provider);
+        }
+        gen.writeFieldName("attraction");
+        if (userReward.attraction == null) {
+            gen.writeNull();
+        } else {
+            attractionSerializer.serialize(userReward.attraction, gen, provider);
+        }
+        gen.writeNumberField("rewardPoints", userReward.getRewardPoints());
+        gen.writeBooleanField("pending", userReward.isPending());
+        gen.writeEndObject();
+    }
+}
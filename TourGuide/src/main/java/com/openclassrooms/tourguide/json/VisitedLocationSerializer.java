@@ -0,0 +1,48 @@
+package com.openclassrooms.tourguide.json;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * VisitedLocationSerializer writes visited locations field by field, without
+ * reflection. Dates follow the date settings of the ObjectMapper.
+ */
+public class VisitedLocationSerializer extends StdSerializer<VisitedLocation> {
+
+    public VisitedLocationSerializer() {
+        super(VisitedLocation.class);
+    }
+
+    @Override
+    public void serialize(VisitedLocation visitedLocation, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("userId", Objects.toString(visitedLocation.userId, null));
+        gen.writeFieldName("location");
+        writeLocation(visitedLocation.location, gen);
+        gen.writeFieldName("timeVisited");
+        if (visitedLocation.timeVisited == null) {
+            gen.writeNull();
+        } else {
+            provider.defaultSerializeDateValue(visitedLocation.timeVisited, gen);
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writeLocation(Location location, JsonGenerator gen) throws IOException {
+        if (location == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartObject();
+        gen.writeNumberField("longitude", location.longitude);
+        gen.writeNumberField("latitude", location.latitude);
+        gen.writeEndObject();
+    }
+}
@@ -2,31 +2,72 @@ package com.openclassrooms.tourguide.mapper;
 
 import com.openclassrooms.tourguide.dto.NearbyAttractionDto;
 import com.openclassrooms.tourguide.model.AttractionDistanceFromUser;
+import com.openclassrooms.tourguide.tracing.RequestTrace;
 import com.openclassrooms.tourguide.user.User;
 import gpsUtil.location.VisitedLocation;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import rewardCentral.RewardCentral;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * MapperNearbyAttractionDto is responsible for mapping AttractionDistanceFromUser
  * objects to NearbyAttractionDto objects, which contain details about nearby attractions.
+ * The reward points of the attractions are asked to RewardCentral concurrently,
+ * under a deadline shared by all of them, on a bounded number of threads. A call
+ * that cannot get a thread, because earlier calls still hold them past their
+ * deadline, is not made and its points are unknown.
  */
 @Component
 public class MapperNearbyAttractionDto {
 
     private static final Logger log = LoggerFactory.getLogger(MapperNearbyAttractionDto.class);
     private final RewardCentral rewardsCentral;
+    private final long rewardPointsDeadlineMillis;
+    private final ThreadPoolExecutor executor;
 
     public MapperNearbyAttractionDto(RewardCentral rewardsCentral) {
+        this(rewardsCentral, 1000);
+    }
+
+    public MapperNearbyAttractionDto(RewardCentral rewardsCentral, long rewardPointsDeadlineMillis) {
+        this(rewardsCentral, rewardPointsDeadlineMillis, 100);
+    }
+
+    @Autowired
+    public MapperNearbyAttractionDto(RewardCentral rewardsCentral,
+                                     @Value("${tourguide.nearby-attractions.reward-points-deadline-millis:1000}") long rewardPointsDeadlineMillis,
+                                     @Value("${tourguide.nearby-attractions.max-concurrent-calls:100}") int maxConcurrentCalls) {
         this.rewardsCentral = rewardsCentral;
+        this.rewardPointsDeadlineMillis = rewardPointsDeadlineMillis;
+        this.executor = new ThreadPoolExecutor(maxConcurrentCalls, maxConcurrentCalls, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "nearby-reward-points");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
     }
 
     /**
      * Maps a list of AttractionDistanceFromUser to a list of NearbyAttractionDto.
+     * The reward points not obtained before the deadline are left null, as unknown.
      *
      * @param attractionDistances the list of AttractionDistanceFromUser to map
      * @param visitedLocation the VisitedLocation of the user
@@ -35,16 +76,46 @@ public class MapperNearbyAttractionDto {
      */
     public List<NearbyAttractionDto> mapAttractionsToNearAttractionsDto(List<AttractionDistanceFromUser> attractionDistances, VisitedLocation visitedLocation, User user) {
         log.info("Mapping {} attractions to NearbyAttractionDto", attractionDistances.size());
-        return attractionDistances.stream().
-                map(attractionDistance -> new NearbyAttractionDto(
-                        attractionDistance.getAttraction().attractionName, // Attraction name
-                        attractionDistance.getAttraction().latitude, // Attraction latitude
-                        attractionDistance.getAttraction().longitude, // Attraction longitude
-                        visitedLocation.location.latitude, // User latitude
-                        visitedLocation.location.longitude, // User longitude
-                        attractionDistance.getDistance(), // Distance
-                        rewardsCentral.getAttractionRewardPoints(attractionDistance.getAttraction().attractionId, user.getUserId()) // Reward points
-                )).
-                toList();
+        List<CompletableFuture<Integer>> rewardPoints = new ArrayList<>(attractionDistances.size());
+        for (AttractionDistanceFromUser attractionDistance : attractionDistances) {
+            rewardPoints.add(supplyRewardPoints(attractionDistance, user));
+        }
+        // every future completes by the deadline at the latest
+        CompletableFuture.allOf(rewardPoints.toArray(new CompletableFuture[0])).join();
+
+        List<NearbyAttractionDto> nearbyAttractions = new ArrayList<>(attractionDistances.size());
+        for (int i = 0; i < attractionDistances.size(); i++) {
+            AttractionDistanceFromUser attractionDistance = attractionDistances.get(i);
+            nearbyAttractions.add(new NearbyAttractionDto(
+                    attractionDistance.getAttraction().attractionName, // Attraction name
+                    attractionDistance.getAttraction().latitude, // Attraction latitude
+                    attractionDistance.getAttraction().longitude, // Attraction longitude
+                    visitedLocation.location.latitude, // User latitude
+                    visitedLocation.location.longitude, // User longitude
+                    attractionDistance.getDistance(), // Distance
+                    rewardPoints.get(i).join() // Reward points, null if unknown
+            ));
+        }
+        return nearbyAttractions;
+    }
+
+    private CompletableFuture<Integer> supplyRewardPoints(AttractionDistanceFromUser attractionDistance, User user) {
+        try {
+            return CompletableFuture.supplyAsync(RequestTrace.wrap(() -> getRewardPoints(attractionDistance, user)), executor)
+                    .completeOnTimeout(null, rewardPointsDeadlineMillis, TimeUnit.MILLISECONDS)
+                    .exceptionally(e -> {
+                        log.error("Error getting reward points for attraction: {}", attractionDistance.getAttraction().attractionName, e);
+                        return null;
+                    });
+        } catch (RejectedExecutionException e) {
+            log.warn("No thread left to get reward points for attraction: {}", attractionDistance.getAttraction().attractionName);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private int getRewardPoints(AttractionDistanceFromUser attractionDistance, User user) {
+        try (RequestTrace.Span span = RequestTrace.span("rewardCentral")) {
+            return rewardsCentral.getAttractionRewardPoints(attractionDistance.getAttraction().attractionId, user.getUserId());
+        }
     }
 }
@@ -0,0 +1,137 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+
+/**
+ * AttractionCatalog keeps the attractions of gpsUtil in memory as an immutable,
+ * versioned snapshot. The catalog is loaded on first use and reloaded in the
+ * background on a schedule; a reload that finds other attractions swaps in a new
+ * version and notifies the listeners, so that structures derived from the
+ * catalog are rebuilt. Readers only read a volatile reference and never block
+ * once the first version is loaded.
+ * gpsUtil gives new attraction ids on every fetch, so catalogs are compared on
+ * the names and positions of their attractions, and an unchanged catalog keeps
+ * its version along with its ids.
+ */
+public class AttractionCatalog {
+	private static final Logger logger = LoggerFactory.getLogger(AttractionCatalog.class);
+
+	private final GpsUtil gpsUtil;
+	private final List<Consumer<Snapshot>> listeners = new CopyOnWriteArrayList<>();
+	private volatile Snapshot snapshot;
+	private ScheduledExecutorService refresher;
+
+	public AttractionCatalog(GpsUtil gpsUtil) {
+		this.gpsUtil = gpsUtil;
+	}
+
+	/**
+	 * Gets the current version of the catalog, loading it on first use.
+	 *
+	 * @return the current snapshot
+	 */
+	public Snapshot current() {
+		Snapshot current = snapshot;
+		if (current == null) {
+			synchronized (this) {
+				current = snapshot;
+				if (current == null) {
+					current = load(0);
+					snapshot = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Reloads the attractions from gpsUtil and swaps in a new version if they changed.
+	 *
+	 * @return the current snapshot after the reload
+	 */
+	public Snapshot refresh() {
+		List<Attraction> attractions = gpsUtil.getAttractions();
+		Snapshot updated;
+		synchronized (this) {
+			Snapshot current = snapshot;
+			if (current != null && current.fingerprint() == fingerprint(attractions)) {
+				return current;
+			}
+			updated = new Snapshot(current != null ? current.version() + 1 : 0, List.copyOf(attractions),
+					fingerprint(attractions), System.currentTimeMillis());
+			snapshot = updated;
+		}
+		logger.info("Attraction catalog updated to version {} with {} attractions", updated.version(), updated.attractions().size());
+		listeners.forEach(listener -> listener.accept(updated));
+		return updated;
+	}
+
+	/**
+	 * Registers a listener called with every new version of the catalog.
+	 */
+	public void addListener(Consumer<Snapshot> listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Starts reloading the catalog in the background.
+	 *
+	 * @param intervalMillis the time between two reloads in milliseconds
+	 */
+	public synchronized void startRefreshing(long intervalMillis) {
+		stopRefreshing();
+		refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "attraction-catalog-refresh");
+			thread.setDaemon(true);
+			return thread;
+		});
+		refresher.scheduleWithFixedDelay(() -> {
+			try {
+				refresh();
+			} catch (RuntimeException e) {
+				logger.error("Error refreshing the attraction catalog, keeping the current version", e);
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void stopRefreshing() {
+		if (refresher != null) {
+			refresher.shutdownNow();
+			refresher = null;
+		}
+	}
+
+	private Snapshot load(long version) {
+		List<Attraction> attractions = gpsUtil.getAttractions();
+		return new Snapshot(version, List.copyOf(attractions), fingerprint(attractions), System.currentTimeMillis());
+	}
+
+	private static int fingerprint(List<Attraction> attractions) {
+		int hash = 1;
+		for (Attraction attraction : attractions) {
+			hash = 31 * hash + Objects.hash(attraction.attractionName, attraction.latitude, attraction.longitude);
+		}
+		return hash;
+	}
+
+	/**
+	 * @param version     the version of the catalog, incremented on every change
+	 * @param attractions the attractions, immutable
+	 * @param fingerprint the hash of the names and positions of the attractions
+	 * @param loadedAt    the time the version was loaded in milliseconds
+	 */
+	public record Snapshot(long version, List<Attraction> attractions, int fingerprint, long loadedAt) {
+	}
+}
@@ -0,0 +1,270 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * GpsLocationClient calls gpsUtil for user locations with a deadline, so that a
+ * slow call fails instead of holding a tracking thread indefinitely.
+ * When hedging is enabled, a call that has not answered after the configured
+ * percentile of the recent latencies is sent a second time, and the first
+ * response wins. A failed attempt only fails the call once no other attempt is
+ * still running, so that a failing hedge cannot fail a call whose primary
+ * attempt may still answer. Hedged calls are capped to a ratio of the primary calls so that
+ * hedging cannot overload gpsUtil when it slows down as a whole.
+ * The calls run on a bounded number of threads. A call abandoned at its deadline
+ * keeps its thread until gpsUtil answers, so when gpsUtil hangs new calls are
+ * rejected instead of piling up threads. A rejected hedge still counts against
+ * the hedging budget.
+ */
+public class GpsLocationClient {
+	private Logger logger = LoggerFactory.getLogger(GpsLocationClient.class);
+	private static final int LATENCY_SAMPLES = 1024;
+	private static final int MIN_SAMPLES_BEFORE_HEDGING = 32;
+	private static final int HEDGE_DELAY_REFRESH_INTERVAL = 64;
+	// hedged calls allowed before the ratio applies, so that hedging works from the start
+	private static final int HEDGE_BURST = 10;
+
+	private final GpsUtil gpsUtil;
+	private final ThreadPoolExecutor callExecutor;
+	private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_SAMPLES);
+	private final AtomicLong recordedLatencies = new AtomicLong();
+	private final AtomicLong primaryCalls = new AtomicLong();
+	private final AtomicLong hedgedCalls = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong rejectedCalls = new AtomicLong();
+	private volatile long hedgeDelayMillis = -1;
+	private volatile long deadlineMillis = TimeUnit.SECONDS.toMillis(2);
+	private volatile boolean hedgingEnabled = false;
+	private volatile double hedgePercentile = 0.95;
+	private volatile double hedgeBudgetRatio = 0.05;
+
+	public GpsLocationClient(GpsUtil gpsUtil) {
+		this(gpsUtil, Runtime.getRuntime().availableProcessors() * 8);
+	}
+
+	/**
+	 * Creates a GpsLocationClient running at most a given number of gpsUtil calls at once.
+	 *
+	 * @param gpsUtil the gpsUtil client
+	 * @param maxConcurrentCalls the maximum number of calls running at once, hedges included
+	 */
+	public GpsLocationClient(GpsUtil gpsUtil, int maxConcurrentCalls) {
+		this.gpsUtil = gpsUtil;
+		this.callExecutor = new ThreadPoolExecutor(maxConcurrentCalls, maxConcurrentCalls, 60, TimeUnit.SECONDS,
+				new SynchronousQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "gps-location-call");
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+		callExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Sets the maximum number of gpsUtil calls running at once, hedges included.
+	 */
+	public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+		if (maxConcurrentCalls > callExecutor.getMaximumPoolSize()) {
+			callExecutor.setMaximumPoolSize(maxConcurrentCalls);
+			callExecutor.setCorePoolSize(maxConcurrentCalls);
+		} else {
+			callExecutor.setCorePoolSize(maxConcurrentCalls);
+			callExecutor.setMaximumPoolSize(maxConcurrentCalls);
+		}
+	}
+
+	public void setDeadlineMillis(long deadlineMillis) {
+		this.deadlineMillis = deadlineMillis;
+	}
+
+	public void setHedgingEnabled(boolean hedgingEnabled) {
+		this.hedgingEnabled = hedgingEnabled;
+	}
+
+	/**
+	 * Sets the percentile of the recent latencies after which a call is hedged, between 0 and 1.
+	 */
+	public void setHedgePercentile(double hedgePercentile) {
+		this.hedgePercentile = hedgePercentile;
+		refreshHedgeDelay();
+	}
+
+	/**
+	 * Sets the maximum number of hedged calls, as a ratio of the primary calls.
+	 */
+	public void setHedgeBudgetRatio(double hedgeBudgetRatio) {
+		this.hedgeBudgetRatio = hedgeBudgetRatio;
+	}
+
+	/**
+	 * Get the location of a user, waiting at most for the deadline.
+	 *
+	 * @param userId the id of the user
+	 * @return the VisitedLocation returned by gpsUtil
+	 * @throws CompletionException wrapping a TimeoutException when the deadline is exceeded
+	 */
+	public VisitedLocation getUserLocation(UUID userId) {
+		return getUserLocationAsync(userId).join();
+	}
+
+	/**
+	 * Get the location of a user asynchronously. The returned future fails with a
+	 * TimeoutException when no attempt answered before the deadline, or with a
+	 * RejectedExecutionException when too many calls are already running.
+	 *
+	 * @param userId the id of the user
+	 * @return a CompletableFuture containing the VisitedLocation returned by gpsUtil
+	 */
+	public CompletableFuture<VisitedLocation> getUserLocationAsync(UUID userId) {
+		Attempts attempts = new Attempts();
+		CompletableFuture<VisitedLocation> result = attempts.result;
+		primaryCalls.incrementAndGet();
+		if (!attempt(userId, attempts)) {
+			return result;
+		}
+
+		long delay = hedgeDelayMillis;
+		if (hedgingEnabled && delay >= 0 && delay < deadlineMillis) {
+			// the check runs on the delayer, only the hedged call takes a call thread
+			CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, Runnable::run).execute(() -> {
+				if (!result.isDone() && tryAcquireHedge()) {
+					attempt(userId, attempts);
+				}
+			});
+		}
+
+		return result.orTimeout(deadlineMillis, TimeUnit.MILLISECONDS)
+				.whenComplete((visitedLocation, throwable) -> {
+					if (throwable instanceof TimeoutException) {
+						timeouts.incrementAndGet();
+						logger.debug("gpsUtil did not answer within {} ms for user {}", deadlineMillis, userId);
+					}
+				});
+	}
+
+	public long getPrimaryCalls() {
+		return primaryCalls.get();
+	}
+
+	public long getHedgedCalls() {
+		return hedgedCalls.get();
+	}
+
+	public long getTimeouts() {
+		return timeouts.get();
+	}
+
+	public long getRejectedCalls() {
+		return rejectedCalls.get();
+	}
+
+	/**
+	 * Get the delay after which calls are currently hedged.
+	 *
+	 * @return the delay in milliseconds, or -1 while there are too few latency samples
+	 */
+	public long getHedgeDelayMillis() {
+		return hedgeDelayMillis;
+	}
+
+	public void shutdown() {
+		callExecutor.shutdownNow();
+	}
+
+	/**
+	 * Runs a call whose answer completes the result, unless too many calls are already running.
+	 *
+	 * @return false if the call was rejected
+	 */
+	private boolean attempt(UUID userId, Attempts attempts) {
+		attempts.outstanding.incrementAndGet();
+		try {
+			callExecutor.execute(() -> {
+				long start = System.nanoTime();
+				try {
+					VisitedLocation visitedLocation = gpsUtil.getUserLocation(userId);
+					// late answers are recorded too, they are part of the latency distribution
+					recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+					attempts.result.complete(visitedLocation);
+				} catch (RuntimeException e) {
+					attempts.fail(e);
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			rejectedCalls.incrementAndGet();
+			logger.debug("Too many gpsUtil calls running, call for user {} rejected", userId);
+			attempts.fail(new RejectedExecutionException("Too many gpsUtil calls running", e));
+			return false;
+		}
+	}
+
+	/**
+	 * The attempts of one call: the first answer completes the result, the last
+	 * failure fails it.
+	 */
+	private static class Attempts {
+		private final CompletableFuture<VisitedLocation> result = new CompletableFuture<>();
+		private final AtomicInteger outstanding = new AtomicInteger();
+		// the failure of the first attempt, reported if every attempt fails
+		private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+		void fail(RuntimeException e) {
+			failure.compareAndSet(null, e);
+			if (outstanding.decrementAndGet() == 0) {
+				result.completeExceptionally(failure.get());
+			}
+		}
+	}
+
+	private boolean tryAcquireHedge() {
+		while (true) {
+			long hedged = hedgedCalls.get();
+			if (hedged >= HEDGE_BURST + primaryCalls.get() * hedgeBudgetRatio) {
+				return false;
+			}
+			if (hedgedCalls.compareAndSet(hedged, hedged + 1)) {
+				return true;
+			}
+		}
+	}
+
+	private void recordLatency(long latencyMillis) {
+		long count = recordedLatencies.getAndIncrement();
+		latencies.set((int) (count % LATENCY_SAMPLES), latencyMillis);
+		if ((count + 1) % HEDGE_DELAY_REFRESH_INTERVAL == 0) {
+			refreshHedgeDelay();
+		}
+	}
+
+	private void refreshHedgeDelay() {
+		int samples = (int) Math.min(recordedLatencies.get(), LATENCY_SAMPLES);
+		if (samples < MIN_SAMPLES_BEFORE_HEDGING) {
+			return;
+		}
+		long[] sorted = new long[samples];
+		for (int i = 0; i < samples; i++) {
+			sorted[i] = latencies.get(i);
+		}
+		Arrays.sort(sorted);
+		int index = (int) Math.min(samples - 1, Math.max(0, Math.ceil(hedgePercentile * samples) - 1));
+		hedgeDelayMillis = sorted[index];
+	}
+}
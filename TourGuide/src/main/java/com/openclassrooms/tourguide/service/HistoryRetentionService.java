@@ -0,0 +1,118 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.openclassrooms.tourguide.user.User;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * HistoryRetentionService bounds the location history of the users. Recent
+ * locations are kept at full resolution, older ones are downsampled to one per
+ * bucket, e.g. one per hour, and the ones beyond the maximum age are dropped.
+ * It runs in the background a few users at a time, walking the registry in
+ * successive passes, so that no history stays locked for long and the tracker
+ * is never stalled.
+ */
+@Service
+public class HistoryRetentionService {
+	private static final Logger logger = LoggerFactory.getLogger(HistoryRetentionService.class);
+
+	private final TourGuideService tourGuideService;
+	private final boolean enabled;
+	private final long fullResolutionMillis;
+	private final long maxAgeMillis;
+	private final long bucketMillis;
+	private final int usersPerRun;
+	private final long runIntervalMillis;
+	private final LongAdder removedLocations = new LongAdder();
+	private final LongAdder completedPasses = new LongAdder();
+	private Iterator<User> pass;
+	private ScheduledExecutorService scheduler;
+
+	public HistoryRetentionService(TourGuideService tourGuideService,
+			@Value("${tourguide.history.retention.enabled:true}") boolean enabled,
+			@Value("${tourguide.history.retention.full-resolution-hours:24}") long fullResolutionHours,
+			@Value("${tourguide.history.retention.max-age-days:30}") long maxAgeDays,
+			@Value("${tourguide.history.retention.bucket-minutes:60}") long bucketMinutes,
+			@Value("${tourguide.history.retention.users-per-run:100}") int usersPerRun,
+			@Value("${tourguide.history.retention.run-interval-millis:1000}") long runIntervalMillis) {
+		this.tourGuideService = tourGuideService;
+		this.enabled = enabled;
+		this.fullResolutionMillis = TimeUnit.HOURS.toMillis(fullResolutionHours);
+		this.maxAgeMillis = TimeUnit.DAYS.toMillis(maxAgeDays);
+		this.bucketMillis = TimeUnit.MINUTES.toMillis(bucketMinutes);
+		this.usersPerRun = usersPerRun;
+		this.runIntervalMillis = runIntervalMillis;
+	}
+
+	@PostConstruct
+	public void start() {
+		if (!enabled) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "history-retention");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				compactNextUsers();
+			} catch (RuntimeException e) {
+				logger.error("Error applying the history retention", e);
+			}
+		}, runIntervalMillis, runIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	/**
+	 * Applies the retention policy to the next users of the current pass, and
+	 * starts a new pass over the registry when the current one is over.
+	 *
+	 * @return the number of locations removed
+	 */
+	public synchronized int compactNextUsers() {
+		if (pass == null || !pass.hasNext()) {
+			pass = tourGuideService.getAllUsers().iterator();
+			if (!pass.hasNext()) {
+				return 0;
+			}
+		}
+		long now = System.currentTimeMillis();
+		int removed = 0;
+		for (int i = 0; i < usersPerRun && pass.hasNext(); i++) {
+			removed += pass.next().getLocationHistory().compact(now - maxAgeMillis, now - fullResolutionMillis, bucketMillis);
+		}
+		if (!pass.hasNext()) {
+			completedPasses.increment();
+		}
+		removedLocations.add(removed);
+		return removed;
+	}
+
+	public long getRemovedLocationCount() {
+		return removedLocations.sum();
+	}
+
+	public long getCompletedPassCount() {
+		return completedPasses.sum();
+	}
+}
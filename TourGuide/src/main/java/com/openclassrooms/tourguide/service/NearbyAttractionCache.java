@@ -0,0 +1,163 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleBiFunction;
+import java.util.stream.IntStream;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * NearbyAttractionCache stores, for each cell of a latitude/longitude grid, the
+ * attractions that can be among the nearest ones of a location of that cell.
+ * The candidates are the attractions within the distance of the n-th nearest
+ * one from the cell center plus the cell diameter, so that exact distances
+ * computed against the real location among the candidates give the same result
+ * as a full scan.
+ * Cells are evicted least recently used first, and the whole cache is dropped
+ * when a new version of the attraction catalog is seen.
+ */
+public class NearbyAttractionCache {
+	private static final double DEFAULT_CELL_SIZE_DEGREES = 0.005;
+	private static final int DEFAULT_MAX_CELLS = 10000;
+
+	private final ToDoubleBiFunction<Location, Location> distance;
+	private final int nearbyLimit;
+	private final Map<Long, int[]> cells;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private double cellSizeDegrees = DEFAULT_CELL_SIZE_DEGREES;
+	private int maxCells = DEFAULT_MAX_CELLS;
+	private long catalogVersion = -1;
+
+	/**
+	 * @param distance    the distance function, in miles
+	 * @param nearbyLimit the number of nearest attractions looked up
+	 */
+	public NearbyAttractionCache(ToDoubleBiFunction<Location, Location> distance, int nearbyLimit) {
+		this.distance = distance;
+		this.nearbyLimit = nearbyLimit;
+		this.cells = new LinkedHashMap<>(1024, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+				return size() > maxCells;
+			}
+		};
+	}
+
+	public synchronized void setMaxCells(int maxCells) {
+		this.maxCells = maxCells;
+		cells.keySet().removeIf(cell -> cells.size() > maxCells);
+	}
+
+	public synchronized void setCellSizeDegrees(double cellSizeDegrees) {
+		this.cellSizeDegrees = cellSizeDegrees;
+		cells.clear();
+	}
+
+	public synchronized void invalidate() {
+		cells.clear();
+	}
+
+	/**
+	 * Gets the attractions that can be among the nearest ones of a location.
+	 *
+	 * @param location the location of the user
+	 * @param catalog  the current version of the attraction catalog
+	 * @return the candidate attractions, a subset of the catalog
+	 */
+	public List<Attraction> getCandidates(Location location, AttractionCatalog.Snapshot catalog) {
+		List<Attraction> attractions = catalog.attractions();
+		double size;
+		long cell;
+		synchronized (this) {
+			if (catalog.version() != catalogVersion) {
+				cells.clear();
+				catalogVersion = catalog.version();
+			}
+			size = cellSizeDegrees;
+			cell = cellOf(location, size);
+			int[] candidates = cells.get(cell);
+			if (candidates != null) {
+				hits.increment();
+				return select(attractions, candidates);
+			}
+		}
+
+		misses.increment();
+		int[] candidates = computeCandidates(cell, size, attractions);
+		synchronized (this) {
+			if (catalog.version() == catalogVersion && size == cellSizeDegrees) {
+				cells.put(cell, candidates);
+			}
+		}
+		return select(attractions, candidates);
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public synchronized int size() {
+		return cells.size();
+	}
+
+	private int[] computeCandidates(long cell, double size, List<Attraction> attractions) {
+		if (attractions.size() <= nearbyLimit) {
+			int[] all = new int[attractions.size()];
+			Arrays.setAll(all, i -> i);
+			return all;
+		}
+
+		double south = (int) (cell >> 32) * size;
+		double west = (int) cell * size;
+		Location center = new Location(south + size / 2, west + size / 2);
+		double radius = 0;
+		for (double latitude : new double[] {south, south + size}) {
+			for (double longitude : new double[] {west, west + size}) {
+				radius = Math.max(radius, distanceBetween(center, new Location(latitude, longitude)));
+			}
+		}
+
+		double[] distances = new double[attractions.size()];
+		for (int i = 0; i < distances.length; i++) {
+			distances[i] = distanceBetween(center, attractions.get(i));
+		}
+		double[] sorted = distances.clone();
+		Arrays.sort(sorted);
+		double bound = sorted[nearbyLimit - 1] + 2 * radius;
+
+		return IntStream.range(0, distances.length)
+				.filter(i -> distances[i] <= bound)
+				.toArray();
+	}
+
+	private double distanceBetween(Location from, Location to) {
+		double miles = distance.applyAsDouble(from, to);
+		// acos rounding gives NaN for identical points
+		return Double.isNaN(miles) ? 0 : miles;
+	}
+
+	private static List<Attraction> select(List<Attraction> attractions, int[] candidates) {
+		List<Attraction> selected = new ArrayList<>(candidates.length);
+		for (int index : candidates) {
+			selected.add(attractions.get(index));
+		}
+		return selected;
+	}
+
+	private static long cellOf(Location location, double size) {
+		long row = (long) Math.floor(location.latitude / size);
+		long column = (long) Math.floor(location.longitude / size);
+		return (row << 32) | (column & 0xFFFFFFFFL);
+	}
+}
@@ -0,0 +1,119 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ToIntBiFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.tracing.RequestTrace;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.location.Attraction;
+
+/**
+ * RewardPointsResolver gets the points of the rewards recorded as pending, so
+ * that RewardCentral is not called on the tracking path. The points of a user
+ * are resolved when they are read, in parallel, and a single low priority
+ * thread resolves the remaining ones in the background, one at a time, which
+ * spreads the load on RewardCentral.
+ */
+public class RewardPointsResolver {
+	private static final Logger logger = LoggerFactory.getLogger(RewardPointsResolver.class);
+
+	private final ToIntBiFunction<Attraction, User> rewardPoints;
+	private final Consumer<User> onResolved;
+	private final Executor readExecutor;
+	private final ExecutorService filler = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "reward-points-filler");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+	private final AtomicLong pending = new AtomicLong();
+
+	/**
+	 * @param rewardPoints gets the points of an attraction for a user
+	 * @param onResolved   called after points of a user have been resolved
+	 * @param readExecutor runs the resolutions of a read in parallel
+	 */
+	public RewardPointsResolver(ToIntBiFunction<Attraction, User> rewardPoints, Consumer<User> onResolved, Executor readExecutor) {
+		this.rewardPoints = rewardPoints;
+		this.onResolved = onResolved;
+		this.readExecutor = readExecutor;
+	}
+
+	/**
+	 * Queues a pending reward to be resolved in the background.
+	 *
+	 * @param user the rewarded user
+	 * @param userReward the pending reward
+	 */
+	public void schedule(User user, UserReward userReward) {
+		pending.incrementAndGet();
+		filler.execute(() -> {
+			try {
+				resolve(user, userReward);
+			} catch (RuntimeException e) {
+				logger.error("Error resolving reward points of user: {}", user.getUserName(), e);
+			} finally {
+				pending.decrementAndGet();
+			}
+		});
+	}
+
+	/**
+	 * Resolves every pending reward of a user before returning. Rewards already
+	 * being resolved in the background are waited for.
+	 *
+	 * @param user the user about to be read
+	 */
+	public void resolvePending(User user) {
+		List<CompletableFuture<Void>> resolutions = new ArrayList<>();
+		for (UserReward userReward : user.getUserRewards()) {
+			if (userReward.isPending()) {
+				resolutions.add(CompletableFuture.runAsync(RequestTrace.wrap(() -> resolve(user, userReward)), readExecutor));
+			}
+		}
+		if (resolutions.isEmpty()) {
+			return;
+		}
+		try (RequestTrace.Span span = RequestTrace.span("resolveRewardPoints")) {
+			CompletableFuture.allOf(resolutions.toArray(new CompletableFuture[0])).join();
+		} catch (RuntimeException e) {
+			logger.error("Error resolving reward points of user: {}", user.getUserName(), e);
+		}
+	}
+
+	/**
+	 * Gets the number of rewards queued for the background resolution.
+	 *
+	 * @return the number of queued rewards, some may have been resolved by a read since
+	 */
+	public long getPendingCount() {
+		return pending.get();
+	}
+
+	public void shutdown() {
+		filler.shutdownNow();
+	}
+
+	private void resolve(User user, UserReward userReward) {
+		userReward.resolveRewardPoints(() -> {
+			try (RequestTrace.Span span = RequestTrace.span("rewardCentral")) {
+				return rewardPoints.applyAsInt(userReward.attraction, user);
+			}
+		}, points -> {
+			user.addResolvedRewardPoints(points);
+			onResolved.accept(user);
+		});
+	}
+}
@@ -0,0 +1,129 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.user.User;
+
+import gpsUtil.location.Attraction;
+
+/**
+ * RewardsReevaluationJob applies the current proximity buffer to the full
+ * location history of a whole user population. The population is split in
+ * chunks processed in parallel on a fork/join pool; RewardCentral calls are
+ * declared as blocking so that the pool keeps enough threads busy.
+ * Progress can be followed while the job runs, and the job can be cancelled:
+ * chunks stop at the next user once cancellation is requested.
+ */
+public class RewardsReevaluationJob {
+	private static final Logger logger = LoggerFactory.getLogger(RewardsReevaluationJob.class);
+	private static final int CHUNK_SIZE = 64;
+
+	public enum State { RUNNING, COMPLETED, CANCELLED, FAILED }
+
+	private final RewardsService rewardsService;
+	private final List<User> users;
+	private final List<Attraction> attractions;
+	private final int proximityBuffer;
+	private final ForkJoinPool pool;
+	private final AtomicInteger processedUsers = new AtomicInteger();
+	private final LongAdder rewardsAdded = new LongAdder();
+	private final long startedAt = System.currentTimeMillis();
+	private volatile long finishedAt;
+	private volatile boolean cancelled;
+	private volatile State state = State.RUNNING;
+
+	RewardsReevaluationJob(RewardsService rewardsService, List<User> users, List<Attraction> attractions,
+						   int proximityBuffer, int parallelism) {
+		this.rewardsService = rewardsService;
+		this.users = users;
+		this.attractions = attractions;
+		this.proximityBuffer = proximityBuffer;
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	void start() {
+		logger.info("Re-evaluating rewards of {} users with a proximity buffer of {} miles", users.size(), proximityBuffer);
+		pool.execute(() -> {
+			try {
+				pool.invoke(new Chunk(0, users.size()));
+				state = cancelled ? State.CANCELLED : State.COMPLETED;
+			} catch (RuntimeException e) {
+				logger.error("Error while re-evaluating rewards", e);
+				state = State.FAILED;
+			} finally {
+				finishedAt = System.currentTimeMillis();
+				logger.info("Rewards re-evaluation {} after {} users, {} rewards added",
+						state, processedUsers.get(), rewardsAdded.sum());
+				pool.shutdown();
+			}
+		});
+	}
+
+	/**
+	 * Requests the job to stop. Users already re-evaluated keep their new rewards.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public int getProximityBuffer() {
+		return proximityBuffer;
+	}
+
+	public int getTotalUsers() {
+		return users.size();
+	}
+
+	public int getProcessedUsers() {
+		return processedUsers.get();
+	}
+
+	public long getRewardsAdded() {
+		return rewardsAdded.sum();
+	}
+
+	public long getStartedAt() {
+		return startedAt;
+	}
+
+	public long getFinishedAt() {
+		return finishedAt;
+	}
+
+	private class Chunk extends RecursiveAction {
+		private final int from;
+		private final int to;
+
+		Chunk(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (cancelled) {
+				return;
+			}
+			if (to - from > CHUNK_SIZE) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Chunk(from, middle), new Chunk(middle, to));
+				return;
+			}
+			for (int i = from; i < to && !cancelled; i++) {
+				rewardsAdded.add(rewardsService.calculateRewards(users.get(i), attractions, proximityBuffer));
+				processedUsers.incrementAndGet();
+			}
+		}
+	}
+}
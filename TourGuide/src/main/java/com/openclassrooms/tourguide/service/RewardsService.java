@@ -5,9 +5,14 @@ import java.util.List;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
+import com.openclassrooms.tourguide.analytics.AttractionPopularity;
+import com.openclassrooms.tourguide.analytics.Leaderboard;
 import com.openclassrooms.tourguide.model.AttractionDistanceFromUser;
+import com.openclassrooms.tourguide.tracing.RequestTrace;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import gpsUtil.GpsUtil;
@@ -29,20 +34,72 @@ public class RewardsService {
     private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
     private static final Integer NEAR_ATTRACTION_LIMIT = 5;
 	private static final Logger logger = LoggerFactory.getLogger(RewardsService.class);
+	private static final long CATALOG_REFRESH_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
 
 	// proximity in miles
     private int defaultProximityBuffer = 10;
-	private int proximityBuffer = defaultProximityBuffer;
+	private volatile int proximityBuffer = defaultProximityBuffer;
 	private int attractionProximityRange = 200;
-	private final GpsUtil gpsUtil;
 	private final RewardCentral rewardsCentral;
 	private final ExecutorService executor;
+	private final Leaderboard leaderboard = new Leaderboard();
+	private final AttractionPopularity attractionPopularity = new AttractionPopularity();
+	private final AttractionCatalog attractionCatalog;
+	private final NearbyAttractionCache nearbyAttractionCache = newNearbyAttractionCache();
+	private final RewardPointsResolver rewardPointsResolver;
+	private volatile boolean lazyRewardPoints;
+	private volatile RewardsReevaluationJob reevaluationJob;
 
+	@Autowired
 	public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral) {
-		this.gpsUtil = gpsUtil;
+		this(gpsUtil, rewardCentral, Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	/**
+	 * Creates a RewardsService with a given number of threads calling RewardCentral.
+	 *
+	 * @param gpsUtil the gpsUtil client
+	 * @param rewardCentral the RewardCentral client
+	 * @param rewardThreads the number of threads calculating rewards
+	 */
+	public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral, int rewardThreads) {
 		this.rewardsCentral = rewardCentral;
-		int nThreads = Runtime.getRuntime().availableProcessors();
-		this.executor = Executors.newFixedThreadPool(nThreads * 4);
+		this.executor = Executors.newFixedThreadPool(rewardThreads);
+		this.attractionCatalog = new AttractionCatalog(gpsUtil);
+		this.rewardPointsResolver = new RewardPointsResolver(this::getRewardPoints, leaderboard::update, executor);
+		attractionCatalog.startRefreshing(CATALOG_REFRESH_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * Enables the lazy mode, where rewards are recorded with their points pending
+	 * and RewardCentral is only called when the points are read, or in the background.
+	 *
+	 * @param lazyRewardPoints true to resolve reward points lazily
+	 */
+	@Autowired
+	public void setLazyRewardPoints(@Value("${tourguide.rewards.lazy-points:false}") boolean lazyRewardPoints) {
+		this.lazyRewardPoints = lazyRewardPoints;
+	}
+
+	public boolean isLazyRewardPoints() {
+		return lazyRewardPoints;
+	}
+
+	/**
+	 * Resolves the pending reward points of a user, to be called before they are read.
+	 *
+	 * @param user the user whose rewards or points are about to be read
+	 */
+	public void resolvePendingRewardPoints(User user) {
+		rewardPointsResolver.resolvePending(user);
+	}
+
+	public RewardPointsResolver getRewardPointsResolver() {
+		return rewardPointsResolver;
+	}
+
+	public int getProximityBuffer() {
+		return proximityBuffer;
 	}
 
 	/**
@@ -63,6 +120,171 @@ public class RewardsService {
 		proximityBuffer = defaultProximityBuffer;
 	}
 
+	/**
+	 * Changes the proximity buffer and re-evaluates the rewards of the given users
+	 * against their full location history, in parallel. A job still running for a
+	 * previous buffer is cancelled.
+	 *
+	 * @param users the users to re-evaluate
+	 * @param proximityBuffer the new proximity buffer in miles
+	 * @return the started job, to follow its progress
+	 */
+	public synchronized RewardsReevaluationJob startReevaluation(List<User> users, int proximityBuffer) {
+		if (reevaluationJob != null) {
+			reevaluationJob.cancel();
+		}
+		setProximityBuffer(proximityBuffer);
+		int nThreads = Runtime.getRuntime().availableProcessors();
+		reevaluationJob = new RewardsReevaluationJob(this, users, getAttractions(), proximityBuffer, nThreads * 4);
+		reevaluationJob.start();
+		return reevaluationJob;
+	}
+
+	/**
+	 * Gets the last started re-evaluation job.
+	 *
+	 * @return the job, or null if none has been started
+	 */
+	public RewardsReevaluationJob getReevaluationJob() {
+		return reevaluationJob;
+	}
+
+	public NearbyAttractionCache getNearbyAttractionCache() {
+		return nearbyAttractionCache;
+	}
+
+	/**
+	 * Calculates synchronously the rewards of a user that has just been tracked,
+	 * and counts the visits of the new location to the attractions near it.
+	 *
+	 * @param user the user for whom to calculate rewards
+	 * @param newLocation the location just tracked
+	 * @param attractions the attractions to check, shared by a whole tracking batch
+	 * @return the number of rewards added
+	 */
+	public int calculateRewards(User user, VisitedLocation newLocation, List<Attraction> attractions) {
+		recordVisits(newLocation, attractions);
+		return calculateRewards(user, attractions, proximityBuffer);
+	}
+
+	/**
+	 * Gets the attractions rewards are calculated against, from the current
+	 * version of the attraction catalog.
+	 *
+	 * @return the list of attractions
+	 */
+	public List<Attraction> getAttractions() {
+		return attractionCatalog.current().attractions();
+	}
+
+	public AttractionCatalog getAttractionCatalog() {
+		return attractionCatalog;
+	}
+
+	/**
+	 * Calculates synchronously the rewards of a user over its whole location
+	 * history. RewardCentral is called at most once per attraction, for the first
+	 * visited location near it, and the call is flagged as blocking to the
+	 * fork/join pool running it.
+	 *
+	 * @param user the user for whom to calculate rewards
+	 * @param attractions the attractions to check
+	 * @param proximityBuffer the proximity buffer in miles
+	 * @return the number of rewards added
+	 */
+	int calculateRewards(User user, List<Attraction> attractions, int proximityBuffer) {
+		return calculateRewards(user, attractions, proximityBuffer, true);
+	}
+
+	/**
+	 * Calculates synchronously the rewards of a user, which may not be registered,
+	 * such as the synthetic users of the warm-up. The rewards of an unregistered
+	 * user get their points right away and are not counted in the leaderboard nor
+	 * in the attraction popularity.
+	 *
+	 * @param user the user for whom to calculate rewards
+	 * @param attractions the attractions to check
+	 * @param proximityBuffer the proximity buffer in miles
+	 * @param registered whether the user is registered
+	 * @return the number of rewards added
+	 */
+	int calculateRewards(User user, List<Attraction> attractions, int proximityBuffer, boolean registered) {
+		List<VisitedLocation> userLocations = user.getVisitedLocations();
+		List<String> attractionRewarded = getAttractionNamesFromUserRewards(user);
+		int rewardsAdded = 0;
+
+		for (Attraction attraction : attractions) {
+			if (attractionRewarded.contains(attraction.attractionName)) {
+				continue;
+			}
+			VisitedLocation nearLocation = userLocations.stream()
+					.filter(visitedLocation -> getDistance(attraction, visitedLocation.location) <= proximityBuffer)
+					.findFirst()
+					.orElse(null);
+			if (nearLocation == null) {
+				continue;
+			}
+			if (lazyRewardPoints && registered) {
+				if (addPendingReward(user, nearLocation, attraction)) {
+					rewardsAdded++;
+				}
+				continue;
+			}
+			int rewardPoints = getRewardPointsBlocking(attraction, user);
+			if (user.addUserReward(new UserReward(nearLocation, attraction, rewardPoints))) {
+				if (registered) {
+					leaderboard.update(user);
+					attractionPopularity.recordReward(attraction, System.currentTimeMillis());
+				}
+				rewardsAdded++;
+			}
+		}
+		return rewardsAdded;
+	}
+
+	private int getRewardPointsBlocking(Attraction attraction, User user) {
+		int[] rewardPoints = new int[1];
+		try {
+			ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+				private boolean done;
+
+				@Override
+				public boolean block() {
+					rewardPoints[0] = getRewardPoints(attraction, user);
+					done = true;
+					return true;
+				}
+
+				@Override
+				public boolean isReleasable() {
+					return done;
+				}
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while getting reward points");
+		}
+		return rewardPoints[0];
+	}
+
+	/**
+	 * Gets the leaderboard of users by cumulative reward points, updated on each reward.
+	 *
+	 * @return the leaderboard
+	 */
+	public Leaderboard getLeaderboard() {
+		return leaderboard;
+	}
+
+	/**
+	 * Gets the live visit and reward counts per attraction.
+	 *
+	 * @return the attraction popularity counters
+	 */
+	public AttractionPopularity getAttractionPopularity() {
+		return attractionPopularity;
+	}
+
 	/**
 	 * Calculates rewards for a user based on their visited locations and the
 	 * attractions they have not been rewarded for yet.
@@ -71,19 +293,42 @@ public class RewardsService {
 	 * @return a CompletableFuture that completes when all rewards have been calculated
 	 */
 	public CompletableFuture<Void> calculateRewardsAsync(User user) {
-		CopyOnWriteArrayList<VisitedLocation> userLocations = new CopyOnWriteArrayList<>(user.getVisitedLocations());
-		List<Attraction> attractions = gpsUtil.getAttractions();
+		return calculateRewardsAsync(user, null);
+	}
+
+	/**
+	 * Calculates rewards for a user that has just been tracked, and counts the
+	 * visits of the new location to the attractions near it.
+	 *
+	 * @param user the user for whom to calculate rewards
+	 * @param newLocation the location just tracked, or null to only calculate rewards
+	 * @return a CompletableFuture that completes when all rewards have been calculated
+	 */
+	public CompletableFuture<Void> calculateRewardsAsync(User user, VisitedLocation newLocation) {
+		List<VisitedLocation> userLocations = user.getVisitedLocations();
+		List<Attraction> attractions = getAttractions();
 		List<String> attractionRewarded = getAttractionNamesFromUserRewards(user);
 		List<CompletableFuture<Void>> futures = new ArrayList<>();
 
+		if (newLocation != null) {
+			recordVisits(newLocation, attractions);
+		}
+
 		for (VisitedLocation visitedLocation : userLocations) {
 			for (Attraction attraction : attractions) {
 				boolean isRewarded = attractionRewarded.contains(attraction.attractionName);
 				if (!isRewarded && nearAttraction(visitedLocation, attraction)) {
+					if (lazyRewardPoints) {
+						addPendingReward(user, visitedLocation, attraction);
+						continue;
+					}
 					CompletableFuture<Void> future = CompletableFuture
 							.supplyAsync(() -> getRewardPoints(attraction, user), executor)
 							.thenAcceptAsync(rewardPoints -> {
-								user.addUserReward(new UserReward(visitedLocation, attraction, rewardPoints));
+								if (user.addUserReward(new UserReward(visitedLocation, attraction, rewardPoints))) {
+									leaderboard.update(user);
+									attractionPopularity.recordReward(attraction, System.currentTimeMillis());
+								}
 							})
 							.exceptionally((it) -> {
 								logger.error("Error while calculating rewards", it);
@@ -97,6 +342,36 @@ public class RewardsService {
 		return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
 	}
 
+	/**
+	 * Adds a reward with its points pending, and queues it for the background resolution.
+	 *
+	 * @return true if the reward was added
+	 */
+	private boolean addPendingReward(User user, VisitedLocation visitedLocation, Attraction attraction) {
+		UserReward userReward = UserReward.pending(visitedLocation, attraction);
+		if (!user.addUserReward(userReward)) {
+			return false;
+		}
+		attractionPopularity.recordReward(attraction, System.currentTimeMillis());
+		rewardPointsResolver.schedule(user, userReward);
+		return true;
+	}
+
+	/**
+	 * Counts a visit for each attraction within the proximity buffer of a location.
+	 *
+	 * @param visitedLocation the location to count
+	 * @param attractions the attractions to check
+	 */
+	private void recordVisits(VisitedLocation visitedLocation, List<Attraction> attractions) {
+		long time = visitedLocation.timeVisited != null ? visitedLocation.timeVisited.getTime() : System.currentTimeMillis();
+		for (Attraction attraction : attractions) {
+			if (nearAttraction(visitedLocation, attraction)) {
+				attractionPopularity.recordVisit(attraction, visitedLocation.userId, time);
+			}
+		}
+	}
+
 	/**
 	 * Retrieves the names of attractions from the user's rewards.
 	 *
@@ -181,7 +456,19 @@ public class RewardsService {
 		}
 
 		logger.info("Calculating distances for visited location: {}", visitedLocation.location);
-		return gpsUtil.getAttractions().stream().
+		try (RequestTrace.Span span = RequestTrace.span("attractionDistances")) {
+			return getAttractionDistancesFromUser(visitedLocation, nearbyAttractionCache);
+		}
+	}
+
+	/**
+	 * Same as {@link #getAttractionDistancesFromUser(VisitedLocation)}, with the
+	 * candidates looked up in the given cache, e.g. a throwaway one for locations
+	 * that should not take room in the shared cache.
+	 */
+	List<AttractionDistanceFromUser> getAttractionDistancesFromUser(VisitedLocation visitedLocation,
+			NearbyAttractionCache cache) {
+		return cache.getCandidates(visitedLocation.location, attractionCatalog.current()).stream().
 				map(attraction -> new AttractionDistanceFromUser(
 						attraction,
 						getDistance(attraction, visitedLocation.location)
@@ -190,4 +477,13 @@ public class RewardsService {
 				.limit(NEAR_ATTRACTION_LIMIT) // Limit to the closest 5 attractions
 				.toList();
 	}
+
+	/**
+	 * Creates an empty cache like the shared one, see {@link #getNearbyAttractionCache()}.
+	 *
+	 * @return a new cache
+	 */
+	NearbyAttractionCache newNearbyAttractionCache() {
+		return new NearbyAttractionCache(this::getDistance, NEAR_ATTRACTION_LIMIT);
+	}
 }
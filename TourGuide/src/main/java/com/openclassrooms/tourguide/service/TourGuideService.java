@@ -1,8 +1,11 @@
 package com.openclassrooms.tourguide.service;
 
+import com.openclassrooms.tourguide.geofence.GeofenceEngine;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
 import com.openclassrooms.tourguide.model.AttractionDistanceFromUser;
 import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.tracker.TrackingPriority;
+import com.openclassrooms.tourguide.tracing.RequestTrace;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 
@@ -10,20 +13,26 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import gpsUtil.GpsUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 
 import tripPricer.Provider;
-import tripPricer.TripPricer;
 
 /**
  * TourGuideService provides methods to manage users, track their locations,
@@ -34,16 +43,91 @@ public class TourGuideService {
 	private Logger logger = LoggerFactory.getLogger(TourGuideService.class);
 	private final GpsUtil gpsUtil;
 	private final RewardsService rewardsService;
-	private final TripPricer tripPricer = new TripPricer();
+	private final TripDealsService tripDealsService;
+	private final GpsLocationClient gpsLocationClient;
+	private final GeofenceEngine geofenceEngine;
 	public final Tracker tracker;
 	boolean testMode = true;
 	private final ExecutorService executor;
+	private final int trackingParallelism;
+	private volatile Predicate<User> userOwnership = user -> true;
+	// fixes closer than this to the latest location are not recorded, 0 records every fix
+	private volatile double movementThresholdMiles = 0;
+	private volatile long maxStationaryMillis = TimeUnit.HOURS.toMillis(1);
+	private final LongAdder stationaryFixes = new LongAdder();
 
 	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
+		this(gpsUtil, rewardsService, new TripDealsService());
+	}
+
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripDealsService tripDealsService) {
+		this(gpsUtil, rewardsService, tripDealsService, new SimpleMeterRegistry());
+	}
+
+	/**
+	 * Creates a TourGuideService whose tracker publishes its metrics to a given registry.
+	 *
+	 * @param gpsUtil the gpsUtil client
+	 * @param rewardsService the rewards service
+	 * @param tripDealsService the trip deals service
+	 * @param meterRegistry the registry of the tracker metrics
+	 */
+	@Autowired
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripDealsService tripDealsService,
+			MeterRegistry meterRegistry) {
+		this(gpsUtil, rewardsService, tripDealsService, Runtime.getRuntime().availableProcessors() * 4, true,
+				meterRegistry);
+	}
+
+	/**
+	 * Creates a TourGuideService with a given number of tracking threads, and
+	 * optionally without starting the background tracker, e.g. for benchmarks.
+	 *
+	 * @param gpsUtil the gpsUtil client
+	 * @param rewardsService the rewards service
+	 * @param trackingThreads the number of threads tracking user locations
+	 * @param startTracker whether the tracker starts polling right away
+	 */
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, int trackingThreads, boolean startTracker) {
+		this(gpsUtil, rewardsService, new TripDealsService(), trackingThreads, startTracker);
+	}
+
+	/**
+	 * Creates a TourGuideService with a given trip deals service and number of
+	 * tracking threads, whose tracker metrics are kept in a registry of its own.
+	 *
+	 * @param gpsUtil the gpsUtil client
+	 * @param rewardsService the rewards service
+	 * @param tripDealsService the trip deals service
+	 * @param trackingThreads the number of threads tracking user locations
+	 * @param startTracker whether the tracker starts polling right away
+	 */
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripDealsService tripDealsService,
+			int trackingThreads, boolean startTracker) {
+		this(gpsUtil, rewardsService, tripDealsService, trackingThreads, startTracker, new SimpleMeterRegistry());
+	}
+
+	/**
+	 * Creates a TourGuideService with a given trip deals service, number of
+	 * tracking threads and registry of the tracker metrics.
+	 *
+	 * @param gpsUtil the gpsUtil client
+	 * @param rewardsService the rewards service
+	 * @param tripDealsService the trip deals service
+	 * @param trackingThreads the number of threads tracking user locations
+	 * @param startTracker whether the tracker starts polling right away
+	 * @param meterRegistry the registry of the tracker metrics
+	 */
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripDealsService tripDealsService,
+			int trackingThreads, boolean startTracker, MeterRegistry meterRegistry) {
 		this.gpsUtil = gpsUtil;
 		this.rewardsService = rewardsService;
-		int nThreads = Runtime.getRuntime().availableProcessors();
-		this.executor = Executors.newFixedThreadPool(nThreads * 4);
+		this.tripDealsService = tripDealsService;
+		// each tracking thread waits on one call, and possibly its hedge
+		this.gpsLocationClient = new GpsLocationClient(gpsUtil, trackingThreads * 2);
+		this.geofenceEngine = new GeofenceEngine(rewardsService);
+		this.trackingParallelism = trackingThreads;
+		this.executor = Executors.newFixedThreadPool(trackingParallelism);
 		Locale.setDefault(Locale.US);
 
 		if (testMode) {
@@ -52,17 +136,18 @@ public class TourGuideService {
 			initializeInternalUsers();
 			logger.debug("Finished initializing users");
 		}
-		tracker = new Tracker(this);
+		tracker = new Tracker(this, rewardsService, startTracker, meterRegistry);
 		addShutDownHook();
 	}
 
 	/**
-	 * Get the list of user rewards for a given user.
+	 * Get the list of user rewards for a given user, with their pending points resolved.
 	 *
 	 * @param user the user for whom to get rewards
 	 * @return a list of UserReward objects containing the user's rewards
 	 */
 	public List<UserReward> getUserRewards(User user) {
+		rewardsService.resolvePendingRewardPoints(user);
 		return user.getUserRewards();
 	}
 
@@ -73,8 +158,9 @@ public class TourGuideService {
 	 * @return the VisitedLocation object containing the user's current location
 	 */
 	public VisitedLocation getUserLocation(User user) {
-		try	{
-            return (user.getVisitedLocations().size() > 0) ? user.getLastVisitedLocation()
+		try (RequestTrace.Span span = RequestTrace.span("getUserLocation")) {
+            VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+            return (lastVisitedLocation != null) ? lastVisitedLocation
                     : trackUserLocationAsync(user).get();
 		} catch(InterruptedException | ExecutionException e) {
 			logger.error("Error getting user location for user: {}", user.getUserName(), e);
@@ -82,6 +168,31 @@ public class TourGuideService {
 		}
 	}
 
+	/**
+	 * Get a page of the locations visited by a user within a time range, oldest first.
+	 *
+	 * @param user the user whose history is read
+	 * @param from the start of the range, inclusive
+	 * @param to the end of the range, inclusive
+	 * @param offset the number of locations of the range to skip
+	 * @param limit the maximum number of locations to return
+	 * @return a list of VisitedLocation objects
+	 */
+	public List<VisitedLocation> getUserLocationHistory(User user, Date from, Date to, int offset, int limit) {
+		return user.getLocationHistory().getBetween(from, to, offset, limit);
+	}
+
+	/**
+	 * Get where a user was at a given time.
+	 *
+	 * @param user the user whose history is read
+	 * @param time the time to look up
+	 * @return the last location visited at or before that time, null if there is none
+	 */
+	public VisitedLocation getUserLocationAt(User user, Date time) {
+		return user.getLocationHistory().getAt(time);
+	}
+
 	/**
 	 * Get a user by their username.
 	 *
@@ -101,29 +212,186 @@ public class TourGuideService {
 		return internalUserMap.values().stream().collect(Collectors.toList());
 	}
 
+	/**
+	 * Get the users owned by this instance, which are the ones it has to track.
+	 * Every user is owned unless an ownership rule has been set, e.g. by sharding.
+	 *
+	 * @return a list of User objects owned by this instance
+	 */
+	public List<User> getTrackedUsers() {
+		return internalUserMap.values().stream().filter(userOwnership).collect(Collectors.toList());
+	}
+
+	/**
+	 * Get the latest location of every user owned by this instance, lazily, without
+	 * copying the registry. Users registered while the stream is consumed may or
+	 * may not be included.
+	 *
+	 * @param since only locations visited after this time are included, or all of them if null
+	 * @param sinceSequence only users whose locations changed after this location sequence number
+	 *                      are included, see {@link User#currentLocationSequence()}, or all of them if 0
+	 * @return a stream of the latest VisitedLocation of each user
+	 */
+	public Stream<VisitedLocation> streamLatestLocations(Date since, long sinceSequence) {
+		long sinceMillis = since != null ? since.getTime() : Long.MIN_VALUE;
+		return internalUserMap.values().stream()
+				.filter(userOwnership)
+				.filter(user -> user.getLocationChangeSequence() > sinceSequence)
+				.map(User::getLastVisitedLocation)
+				.filter(visitedLocation -> visitedLocation != null && visitedLocation.timeVisited.getTime() > sinceMillis);
+	}
+
+	/**
+	 * Record that a user has just been active through the API, and bring its next
+	 * location poll forward to the minimum interval of its tracking priority.
+	 *
+	 * @param user the active user
+	 */
+	public void markUserActive(User user) {
+		user.markActive();
+		tracker.getScheduler().expedite(user, System.currentTimeMillis());
+	}
+
+	/**
+	 * Change the tracking priority of a user, its next location poll being
+	 * brought forward if the new priority polls it sooner.
+	 *
+	 * @param user the user to change
+	 * @param trackingPriority the new tracking priority
+	 */
+	public void setTrackingPriority(User user, TrackingPriority trackingPriority) {
+		user.setTrackingPriority(trackingPriority);
+		tracker.getScheduler().expedite(user, System.currentTimeMillis());
+	}
+
+	/**
+	 * Check if a user is owned by this instance.
+	 *
+	 * @param user the user to check
+	 * @return true if this instance has to track the user
+	 */
+	public boolean isOwnedUser(User user) {
+		return userOwnership.test(user);
+	}
+
+	/**
+	 * Set the rule deciding which users are owned, and therefore tracked, by this instance.
+	 *
+	 * @param userOwnership the ownership rule
+	 */
+	public void setUserOwnership(Predicate<User> userOwnership) {
+		this.userOwnership = userOwnership;
+	}
+
+	/**
+	 * Set the movement threshold under which a tracked location is not recorded.
+	 * Such a fix only updates the latest location timestamp of the user, and no
+	 * geofence or reward evaluation runs for it, unless the latest recorded
+	 * location is older than the maximum stationary time.
+	 *
+	 * @param movementThresholdMiles the minimum distance to the latest location, 0 to record every fix
+	 * @param maxStationaryMillis the time after which a fix is recorded even without movement
+	 */
+	@Autowired
+	public void setMovementThreshold(@Value("${tourguide.tracker.movement-threshold-miles:0}") double movementThresholdMiles,
+			@Value("${tourguide.tracker.max-stationary-millis:3600000}") long maxStationaryMillis) {
+		this.movementThresholdMiles = movementThresholdMiles;
+		this.maxStationaryMillis = maxStationaryMillis;
+	}
+
+	/**
+	 * Configure the calls to gpsUtil made when tracking user locations.
+	 *
+	 * @param deadlineMillis the time after which a call fails
+	 * @param hedgingEnabled whether slow calls are sent a second time
+	 * @param hedgePercentile the percentile of the recent latencies after which a call is hedged
+	 * @param hedgeBudgetRatio the maximum number of hedged calls, as a ratio of the calls
+	 * @param maxConcurrentCalls the maximum number of calls running at once, 0 for twice the tracking threads
+	 */
+	@Autowired
+	public void configureGpsLocationClient(@Value("${tourguide.gps.deadline-millis:2000}") long deadlineMillis,
+			@Value("${tourguide.gps.hedging-enabled:false}") boolean hedgingEnabled,
+			@Value("${tourguide.gps.hedge-percentile:0.95}") double hedgePercentile,
+			@Value("${tourguide.gps.hedge-budget-ratio:0.05}") double hedgeBudgetRatio,
+			@Value("${tourguide.gps.max-concurrent-calls:0}") int maxConcurrentCalls) {
+		gpsLocationClient.setDeadlineMillis(deadlineMillis);
+		gpsLocationClient.setHedgingEnabled(hedgingEnabled);
+		gpsLocationClient.setHedgePercentile(hedgePercentile);
+		gpsLocationClient.setHedgeBudgetRatio(hedgeBudgetRatio);
+		if (maxConcurrentCalls > 0) {
+			gpsLocationClient.setMaxConcurrentCalls(maxConcurrentCalls);
+		}
+	}
+
+	/**
+	 * Get the number of tracked locations that were not recorded because the user did not move.
+	 *
+	 * @return the number of stationary fixes
+	 */
+	public long getStationaryFixCount() {
+		return stationaryFixes.sum();
+	}
+
 	/**
 	 * Add a user to the internal user map if they do not already exist.
 	 *
 	 * @param user the user to add
 	 */
 	public void addUser(User user) {
-		if (!internalUserMap.containsKey(user.getUserName())) {
-			internalUserMap.put(user.getUserName(), user);
+		internalUserMap.putIfAbsent(user.getUserName(), user);
+	}
+
+	/**
+	 * Add a batch of users to the internal user map, skipping the names already taken.
+	 *
+	 * @param users the users to add
+	 * @return the users that were not added because their name already exists
+	 */
+	public List<User> addUsers(List<User> users) {
+		List<User> duplicates = new ArrayList<>();
+		for (User user : users) {
+			if (internalUserMap.putIfAbsent(user.getUserName(), user) != null) {
+				duplicates.add(user);
+			}
 		}
+		return duplicates;
 	}
 
-	/* * Get trip deals for a user based on their preferences and cumulative reward points.
+	/**
+	 * Get trip deals for a user based on their preferences and cumulative reward points.
+	 * Recently priced deals are served as they are, see {@link TripDealsService}.
 	 *
 	 * @param user the user for whom to get trip deals
 	 * @return a list of providers offering trip deals
 	 */
 	public List<Provider> getTripDeals(User user) {
-		int cumulatativeRewardPoints = user.getUserRewards().stream().mapToInt(i -> i.getRewardPoints()).sum();
-		List<Provider> providers = tripPricer.getPrice(tripPricerApiKey, user.getUserId(),
-				user.getUserPreferences().getNumberOfAdults(), user.getUserPreferences().getNumberOfChildren(),
-				user.getUserPreferences().getTripDuration(), cumulatativeRewardPoints);
-		user.setTripDeals(providers);
-		return providers;
+		rewardsService.resolvePendingRewardPoints(user);
+		try (RequestTrace.Span span = RequestTrace.span("tripDeals")) {
+			return tripDealsService.getTripDeals(user);
+		}
+	}
+
+	/**
+	 * Get trip options for a user, priced for their preferences and nearby variants.
+	 *
+	 * @param user the user for whom to get trip options
+	 * @return the trip options, cheapest first
+	 */
+	public List<TripDealsService.TripOption> getTripOptions(User user) {
+		rewardsService.resolvePendingRewardPoints(user);
+		return tripDealsService.getTripOptions(user);
+	}
+
+	public TripDealsService getTripDealsService() {
+		return tripDealsService;
+	}
+
+	public GpsLocationClient getGpsLocationClient() {
+		return gpsLocationClient;
+	}
+
+	public GeofenceEngine getGeofenceEngine() {
+		return geofenceEngine;
 	}
 
 	/**
@@ -134,18 +402,83 @@ public class TourGuideService {
 	 */
 	public CompletableFuture<VisitedLocation> trackUserLocationAsync(User user) {
 		return CompletableFuture
-		.supplyAsync(() -> {
-			VisitedLocation visitedLocation = gpsUtil.getUserLocation(user.getUserId());
-			user.addToVisitedLocations(visitedLocation);
-			rewardsService.calculateRewardsAsync(user).join();
+		.supplyAsync(RequestTrace.wrap(() -> {
+			VisitedLocation visitedLocation = gpsLocationClient.getUserLocation(user.getUserId());
+			if (!recordLocation(user, visitedLocation)) {
+				return visitedLocation;
+			}
+			geofenceEngine.onLocation(visitedLocation);
+			rewardsService.calculateRewardsAsync(user, visitedLocation).join();
+			tripDealsService.refreshIfChanged(user);
 			return visitedLocation;
-		}, executor)
+		}), executor)
 		.exceptionally((it) -> {
 			logger.info("Error tracking user location for user: {}", user.getUserName(), it);
 			return null;
 		});
 	}
 
+	/**
+	 * Track the location of a batch of users as a single task, and calculate their
+	 * rewards with one attraction fetch for the whole batch. A user whose tracking
+	 * fails gets a null location, without failing the rest of the batch.
+	 *
+	 * @param users the users whose location is to be tracked
+	 * @return a CompletableFuture containing the VisitedLocation of each user, in the same order
+	 */
+	public CompletableFuture<List<VisitedLocation>> trackUserLocationsBatchAsync(List<User> users) {
+		return CompletableFuture.supplyAsync(() -> {
+			List<VisitedLocation> visitedLocations = new ArrayList<>(users.size());
+			List<Attraction> attractions = rewardsService.getAttractions();
+			for (User user : users) {
+				try {
+					VisitedLocation visitedLocation = gpsLocationClient.getUserLocation(user.getUserId());
+					if (recordLocation(user, visitedLocation)) {
+						geofenceEngine.onLocation(visitedLocation);
+						rewardsService.calculateRewards(user, visitedLocation, attractions);
+						tripDealsService.refreshIfChanged(user);
+					}
+					visitedLocations.add(visitedLocation);
+				} catch (RuntimeException e) {
+					logger.info("Error tracking user location for user: {}", user.getUserName(), e);
+					visitedLocations.add(null);
+				}
+			}
+			return visitedLocations;
+		}, executor);
+	}
+
+	/**
+	 * Record a tracked location in the history of a user, unless the user has not
+	 * moved past the movement threshold since the latest recorded location. In
+	 * both cases the latest location timestamp of the user is updated.
+	 *
+	 * @return true if the location was recorded and has to be evaluated
+	 */
+	private boolean recordLocation(User user, VisitedLocation visitedLocation) {
+		VisitedLocation latest = user.getLastVisitedLocation();
+		if (latest != null && movementThresholdMiles > 0
+				&& visitedLocation.timeVisited.getTime() - latest.timeVisited.getTime() < maxStationaryMillis
+				// the distance between identical points can be NaN
+				&& !(rewardsService.getDistance(latest.location, visitedLocation.location) >= movementThresholdMiles)) {
+			user.setLatestLocationTimestamp(visitedLocation.timeVisited);
+			stationaryFixes.increment();
+			return false;
+		}
+		user.addToVisitedLocations(visitedLocation);
+		user.setLatestLocationTimestamp(visitedLocation.timeVisited);
+		return true;
+	}
+
+	/**
+	 * Get the number of tracking tasks that can run at the same time.
+	 *
+	 * @return the number of tracking threads
+	 */
+	public int getTrackingParallelism() {
+		return trackingParallelism;
+	}
+
 	/**
 	 * Get nearby attractions for a user based on their visited location.
 	 *
@@ -169,6 +502,7 @@ public class TourGuideService {
 		Runtime.getRuntime().addShutdownHook(new Thread() {
 			public void run() {
 				tracker.stopTracking();
+				gpsLocationClient.shutdown();
 			}
 		});
 	}
@@ -178,10 +512,9 @@ public class TourGuideService {
 	 * Methods Below: For Internal Testing
 	 * 
 	 **********************************************************************************/
-	private static final String tripPricerApiKey = "test-server-api-key";
 	// Database connection will be used for external users, but for testing purposes
 	// internal users are provided and stored in memory
-	private final Map<String, User> internalUserMap = new HashMap<>();
+	private final Map<String, User> internalUserMap = new ConcurrentHashMap<>();
 
 	private void initializeInternalUsers() {
 		IntStream.range(0, InternalTestHelper.getInternalUserNumber()).forEach(i -> {
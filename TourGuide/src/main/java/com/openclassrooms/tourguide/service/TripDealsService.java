@@ -0,0 +1,255 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.openclassrooms.tourguide.tracing.RequestTrace;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+
+import jakarta.annotation.PreDestroy;
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+/**
+ * TripDealsService prices trip deals and keeps them precomputed for recently
+ * active users. Deals are recomputed in the background whenever the reward
+ * points or the preferences of a user change. A request is served from the
+ * stored deals when they were priced for the current reward points and
+ * preferences and are younger than the staleness bound, otherwise the deals
+ * are priced right away.
+ * Trip options price several variants of the preferences of a user in parallel,
+ * and keep whatever was priced before their deadline. tripPricer cannot be
+ * interrupted, so a variant still being priced at the deadline keeps its thread
+ * until it completes and its result is dropped. The pricing threads are bounded,
+ * and a variant that finds none free is left out as if it missed the deadline.
+ */
+@Service
+public class TripDealsService {
+	private Logger logger = LoggerFactory.getLogger(TripDealsService.class);
+	private static final String tripPricerApiKey = "test-server-api-key";
+	private final TripPricer tripPricer = new TripPricer();
+	private final ExecutorService executor = Executors.newFixedThreadPool(4, runnable -> {
+		Thread thread = new Thread(runnable, "trip-deals-refresh");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final ThreadPoolExecutor optionsExecutor;
+	private final Set<UUID> refreshing = ConcurrentHashMap.newKeySet();
+	private final long stalenessBoundMillis;
+	private final long activityWindowMillis;
+	private final long tripOptionsDeadlineMillis;
+
+	public TripDealsService() {
+		this(TimeUnit.MINUTES.toMillis(15), TimeUnit.MINUTES.toMillis(30), 1000, 64);
+	}
+
+	/**
+	 * Creates a TripDealsService.
+	 *
+	 * @param stalenessBoundMillis the age after which stored deals are priced again on request
+	 * @param activityWindowMillis the time since their last activity during which users get their deals refreshed
+	 * @param tripOptionsDeadlineMillis the time after which the variants not priced yet are left out
+	 * @param maxConcurrentPricings the maximum number of trip options variants priced at once
+	 */
+	@Autowired
+	public TripDealsService(@Value("${tourguide.trip-deals.staleness-bound-millis:900000}") long stalenessBoundMillis,
+			@Value("${tourguide.trip-deals.activity-window-millis:1800000}") long activityWindowMillis,
+			@Value("${tourguide.trip-deals.options-deadline-millis:1000}") long tripOptionsDeadlineMillis,
+			@Value("${tourguide.trip-deals.options-max-concurrent-pricings:64}") int maxConcurrentPricings) {
+		this.stalenessBoundMillis = stalenessBoundMillis;
+		this.activityWindowMillis = activityWindowMillis;
+		this.tripOptionsDeadlineMillis = tripOptionsDeadlineMillis;
+		this.optionsExecutor = new ThreadPoolExecutor(maxConcurrentPricings, maxConcurrentPricings,
+				60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "trip-options-pricing");
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+		optionsExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Get trip deals for a user, from the precomputed deals when they were priced
+	 * for the current reward points and preferences and are recent enough,
+	 * otherwise by pricing them right away.
+	 *
+	 * @param user the user for whom to get trip deals
+	 * @return a list of providers offering trip deals
+	 */
+	public List<Provider> getTripDeals(User user) {
+		long pricedAt = user.getTripDealsTimestamp();
+		if (pricedAt != 0 && user.getTripDealsFingerprint() == fingerprint(user)
+				&& System.currentTimeMillis() - pricedAt <= stalenessBoundMillis) {
+			return user.getTripDeals();
+		}
+		return priceTripDeals(user);
+	}
+
+	/**
+	 * Recompute the trip deals of a recently active user in the background if its
+	 * reward points or preferences changed since they were last priced.
+	 *
+	 * @param user the user whose trip deals may need a refresh
+	 */
+	public void refreshIfChanged(User user) {
+		boolean recentlyActive = System.currentTimeMillis() - user.getLastActivityTime() <= activityWindowMillis;
+		boolean changed = user.getTripDealsTimestamp() == 0 || user.getTripDealsFingerprint() != fingerprint(user);
+		if (!recentlyActive || !changed || !refreshing.add(user.getUserId())) {
+			return;
+		}
+
+		executor.execute(() -> {
+			try {
+				priceTripDeals(user);
+			} catch (RuntimeException e) {
+				logger.error("Error refreshing trip deals for user: {}", user.getUserName(), e);
+			} finally {
+				refreshing.remove(user.getUserId());
+			}
+		});
+	}
+
+	/**
+	 * Price trip deals for a user based on their preferences and cumulative reward
+	 * points, and store them on the user.
+	 *
+	 * @param user the user for whom to price trip deals
+	 * @return a list of providers offering trip deals
+	 */
+	private List<Provider> priceTripDeals(User user) {
+		int fingerprint = fingerprint(user);
+		UserPreferences preferences = user.getUserPreferences();
+		List<Provider> providers = tripPricer.getPrice(tripPricerApiKey, user.getUserId(),
+				preferences.getNumberOfAdults(), preferences.getNumberOfChildren(),
+				preferences.getTripDuration(), user.getCumulativeRewardPoints());
+		user.setTripDeals(providers, fingerprint, System.currentTimeMillis());
+		return providers;
+	}
+
+	/**
+	 * Price the preferences of a user and their variants, a day shorter or longer
+	 * and one adult or child more or less, all in parallel. Variants not priced
+	 * within the deadline are left out. A provider offering the same variant twice
+	 * is only kept at its lowest price.
+	 *
+	 * @param user the user for whom to price trip options
+	 * @return the trip options, cheapest first
+	 */
+	public List<TripOption> getTripOptions(User user) {
+		int rewardPoints = user.getCumulativeRewardPoints();
+		List<CompletableFuture<List<TripOption>>> pricings = new ArrayList<>();
+		for (Variant variant : variantsOf(user.getUserPreferences())) {
+			try {
+				pricings.add(CompletableFuture.supplyAsync(RequestTrace.wrap(() -> price(user.getUserId(), variant, rewardPoints)), optionsExecutor));
+			} catch (RejectedExecutionException e) {
+				logger.debug("No thread left to price variant {} for user: {}", variant, user.getUserName());
+			}
+		}
+
+		try {
+			CompletableFuture.allOf(pricings.toArray(new CompletableFuture[0]))
+					.get(tripOptionsDeadlineMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			logger.debug("Trip options deadline reached for user: {}", user.getUserName());
+		} catch (ExecutionException e) {
+			logger.error("Error pricing trip options for user: {}", user.getUserName(), e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		Map<String, TripOption> cheapest = new HashMap<>();
+		for (CompletableFuture<List<TripOption>> pricing : pricings) {
+			// a late pricing runs to completion, its result is dropped
+			if (!pricing.isDone() || pricing.isCompletedExceptionally()) {
+				continue;
+			}
+			for (TripOption option : pricing.join()) {
+				String key = option.providerName() + '/' + option.variant();
+				cheapest.merge(key, option, (first, second) -> first.price() <= second.price() ? first : second);
+			}
+		}
+		List<TripOption> options = new ArrayList<>(cheapest.values());
+		options.sort(Comparator.comparingDouble(TripOption::price));
+		return options;
+	}
+
+	private List<TripOption> price(UUID userId, Variant variant, int rewardPoints) {
+		List<Provider> providers;
+		try (RequestTrace.Span span = RequestTrace.span("tripPricer")) {
+			providers = tripPricer.getPrice(tripPricerApiKey, userId, variant.numberOfAdults(),
+					variant.numberOfChildren(), variant.tripDuration(), rewardPoints);
+		}
+		List<TripOption> options = new ArrayList<>(providers.size());
+		for (Provider provider : providers) {
+			options.add(new TripOption(provider.name, provider.price, provider.tripId, variant));
+		}
+		return options;
+	}
+
+	private static Set<Variant> variantsOf(UserPreferences preferences) {
+		int tripDuration = preferences.getTripDuration();
+		int adults = preferences.getNumberOfAdults();
+		int children = preferences.getNumberOfChildren();
+		// the preferences themselves come first, duplicates at the bounds are dropped
+		Set<Variant> variants = new LinkedHashSet<>();
+		variants.add(new Variant(tripDuration, adults, children));
+		variants.add(new Variant(Math.max(1, tripDuration - 1), adults, children));
+		variants.add(new Variant(tripDuration + 1, adults, children));
+		variants.add(new Variant(tripDuration, Math.max(1, adults - 1), children));
+		variants.add(new Variant(tripDuration, adults + 1, children));
+		variants.add(new Variant(tripDuration, adults, Math.max(0, children - 1)));
+		variants.add(new Variant(tripDuration, adults, children + 1));
+		return variants;
+	}
+
+	/**
+	 * Summarize everything trip deals depend on, to detect when they must be priced again.
+	 */
+	private int fingerprint(User user) {
+		UserPreferences preferences = user.getUserPreferences();
+		return Objects.hash(user.getCumulativeRewardPoints(), preferences.getNumberOfAdults(),
+				preferences.getNumberOfChildren(), preferences.getTripDuration());
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+		optionsExecutor.shutdownNow();
+	}
+
+	/**
+	 * Preferences a trip option is priced for.
+	 */
+	public record Variant(int tripDuration, int numberOfAdults, int numberOfChildren) {
+	}
+
+	/**
+	 * Offer of a provider for one variant of the preferences of a user.
+	 */
+	public record TripOption(String providerName, double price, UUID tripId, Variant variant) {
+	}
+}
@@ -0,0 +1,446 @@
+package com.openclassrooms.tourguide.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.tourguide.dto.UserImportErrorDto;
+import com.openclassrooms.tourguide.dto.UserImportReportDto;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * UserImportService creates users in bulk from a streamed body, either NDJSON
+ * with one user object per line, or CSV with a header line.
+ * The body is read line by line and cut in chunks that are parsed, validated and
+ * added to the registry in parallel. The number of chunks in flight is bounded,
+ * so that the memory used does not depend on the size of the body. Lines longer
+ * than the maximum line length are skipped without being kept in memory.
+ * Rejected rows are counted, and the ones with the lowest line numbers are
+ * reported.
+ * When sharding is enabled, only the users owned by this instance are imported,
+ * the others are counted as skipped: the body is meant to be sent to every
+ * instance, each one keeping its own users.
+ *
+ * An NDJSON row looks like:
+ * {"userName":"jon","phoneNumber":"000","emailAddress":"jon@tourGuide.com",
+ *  "preferences":{"tripDuration":2,"ticketQuantity":1,"numberOfAdults":2,"numberOfChildren":0},
+ *  "history":[{"latitude":33.8,"longitude":-117.9,"timeVisited":"2024-01-01T00:00:00Z"}]}
+ *
+ * CSV columns are userName, phoneNumber, emailAddress, then optionally
+ * tripDuration, ticketQuantity, numberOfAdults, numberOfChildren and history,
+ * the history being latitude:longitude:epochMillis entries separated by '|'.
+ * Values cannot contain commas.
+ */
+@Service
+public class UserImportService {
+	private static final Logger logger = LoggerFactory.getLogger(UserImportService.class);
+	private static final int CHUNK_SIZE = 1000;
+	private static final int MAX_REPORTED_ERRORS = 1000;
+	private static final Pattern USER_NAME = Pattern.compile("[A-Za-z0-9_.@-]{1,64}");
+
+	public enum Format { NDJSON, CSV }
+
+	private final TourGuideService tourGuideService;
+	private final ObjectMapper objectMapper;
+	private final int parallelism = Runtime.getRuntime().availableProcessors();
+	private final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+	private volatile int maxLineLength = 65536;
+
+	public UserImportService(TourGuideService tourGuideService, ObjectMapper objectMapper) {
+		this.tourGuideService = tourGuideService;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Sets the maximum length of a line, in characters. Longer lines are rejected.
+	 */
+	@Autowired
+	public void setMaxLineLength(@Value("${tourguide.import.max-line-length:65536}") int maxLineLength) {
+		this.maxLineLength = maxLineLength;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Imports the users of a streamed body.
+	 *
+	 * @param body   the body, in UTF-8
+	 * @param format the format of the body
+	 * @return the report of the import
+	 * @throws IOException if the body cannot be read
+	 * @throws RejectedExecutionException if the service is shut down, once the
+	 *         chunks submitted before have been imported
+	 */
+	public UserImportReportDto importUsers(InputStream body, Format format) throws IOException {
+		Import currentImport = new Import(format);
+		LineReader reader = new LineReader(new InputStreamReader(body, StandardCharsets.UTF_8), maxLineLength);
+		// chunks waiting or being parsed, at most two per thread
+		Semaphore inFlight = new Semaphore(parallelism * 2);
+		Phaser pending = new Phaser(1);
+
+		try {
+			long lineNumber = 0;
+			if (format == Format.CSV) {
+				reader.readLine();
+				lineNumber++;
+			}
+			List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+			long chunkFirstLine = lineNumber + 1;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (reader.isTooLong()) {
+					// the line stays in the chunk as a blank one, that keeps the line numbers
+					currentImport.reject(lineNumber, "Line longer than " + maxLineLength + " characters");
+				}
+				chunk.add(line);
+				if (chunk.size() == CHUNK_SIZE) {
+					submit(currentImport, chunk, chunkFirstLine, inFlight, pending);
+					chunk = new ArrayList<>(CHUNK_SIZE);
+					chunkFirstLine = lineNumber + 1;
+				}
+			}
+			if (!chunk.isEmpty()) {
+				submit(currentImport, chunk, chunkFirstLine, inFlight, pending);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("User import interrupted", e);
+		} finally {
+			pending.arriveAndAwaitAdvance();
+		}
+
+		logger.info("Imported {} users, rejected {}, skipped {} owned by other instances",
+				currentImport.imported.get(), currentImport.rejected.get(), currentImport.skipped.get());
+		List<UserImportErrorDto> errors = currentImport.getErrors();
+		return new UserImportReportDto(currentImport.imported.get(), currentImport.rejected.get(),
+				currentImport.skipped.get(), errors);
+	}
+
+	private void submit(Import currentImport, List<String> chunk, long firstLine, Semaphore inFlight, Phaser pending)
+			throws InterruptedException {
+		inFlight.acquire();
+		pending.register();
+		try {
+			executor.execute(() -> {
+				try {
+					importChunk(currentImport, chunk, firstLine);
+				} catch (RuntimeException e) {
+					logger.error("Error importing lines {} to {}", firstLine, firstLine + chunk.size() - 1, e);
+					for (int i = 0; i < chunk.size(); i++) {
+						currentImport.reject(firstLine + i, "Import failed: " + e.getMessage());
+					}
+				} finally {
+					inFlight.release();
+					pending.arriveAndDeregister();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// the chunk will never run, it must not be waited for
+			inFlight.release();
+			pending.arriveAndDeregister();
+			throw e;
+		}
+	}
+
+	private void importChunk(Import currentImport, List<String> chunk, long firstLine) {
+		List<User> users = new ArrayList<>(chunk.size());
+		Map<User, Long> lines = new IdentityHashMap<>();
+		for (int i = 0; i < chunk.size(); i++) {
+			String row = chunk.get(i);
+			if (row.isBlank()) {
+				continue;
+			}
+			try {
+				User user = currentImport.format == Format.NDJSON ? parseJson(row) : parseCsv(row);
+				if (!tourGuideService.isOwnedUser(user)) {
+					currentImport.skipped.incrementAndGet();
+					continue;
+				}
+				users.add(user);
+				lines.put(user, firstLine + i);
+			} catch (IllegalArgumentException | IOException e) {
+				currentImport.reject(firstLine + i, e.getMessage());
+			}
+		}
+
+		List<User> duplicates = tourGuideService.addUsers(users);
+		currentImport.imported.addAndGet(users.size() - duplicates.size());
+		for (User duplicate : duplicates) {
+			currentImport.reject(lines.get(duplicate), "User " + duplicate.getUserName() + " already exists");
+		}
+	}
+
+	private User parseJson(String row) throws IOException {
+		JsonNode node = objectMapper.readTree(row);
+		if (node == null || !node.isObject()) {
+			throw new IllegalArgumentException("A row must be a JSON object");
+		}
+		User user = newUser(node.path("userId").asText(null), node.path("userName").asText(null),
+				node.path("phoneNumber").asText(""), node.path("emailAddress").asText(null));
+
+		JsonNode preferences = node.path("preferences");
+		if (preferences.isObject()) {
+			setPreferences(user, intField(preferences, "tripDuration", 1), intField(preferences, "ticketQuantity", 1),
+					intField(preferences, "numberOfAdults", 1), intField(preferences, "numberOfChildren", 0));
+		}
+		for (JsonNode visit : node.path("history")) {
+			JsonNode time = visit.path("timeVisited");
+			addVisit(user, visit.path("latitude").asDouble(Double.NaN), visit.path("longitude").asDouble(Double.NaN),
+					time.isNumber() ? time.asLong() : parseInstant(time.asText()));
+		}
+		return user;
+	}
+
+	private User parseCsv(String row) {
+		String[] columns = row.split(",", -1);
+		if (columns.length < 3) {
+			throw new IllegalArgumentException("Expected at least userName, phoneNumber and emailAddress");
+		}
+		User user = newUser(null, columns[0].trim(), columns[1].trim(), columns[2].trim());
+		if (columns.length >= 7) {
+			setPreferences(user, parseInt(columns[3], 1), parseInt(columns[4], 1), parseInt(columns[5], 1), parseInt(columns[6], 0));
+		}
+		if (columns.length >= 8 && !columns[7].isBlank()) {
+			for (String visit : columns[7].trim().split("\\|")) {
+				String[] fields = visit.split(":");
+				if (fields.length != 3) {
+					throw new IllegalArgumentException("History entries must be latitude:longitude:epochMillis");
+				}
+				addVisit(user, parseDouble(fields[0]), parseDouble(fields[1]), parseLong(fields[2]));
+			}
+		}
+		return user;
+	}
+
+	private User newUser(String userId, String userName, String phoneNumber, String emailAddress) {
+		if (userName == null || !USER_NAME.matcher(userName).matches()) {
+			throw new IllegalArgumentException("Invalid userName: " + userName);
+		}
+		if (emailAddress == null || !emailAddress.contains("@")) {
+			throw new IllegalArgumentException("Invalid emailAddress: " + emailAddress);
+		}
+		UUID id;
+		try {
+			id = userId == null || userId.isBlank() ? UUID.randomUUID() : UUID.fromString(userId);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid userId: " + userId);
+		}
+		return new User(id, userName, phoneNumber, emailAddress);
+	}
+
+	private void setPreferences(User user, int tripDuration, int ticketQuantity, int numberOfAdults, int numberOfChildren) {
+		if (tripDuration < 1 || ticketQuantity < 1 || numberOfAdults < 0 || numberOfChildren < 0) {
+			throw new IllegalArgumentException("Invalid preferences");
+		}
+		UserPreferences preferences = new UserPreferences();
+		preferences.setTripDuration(tripDuration);
+		preferences.setTicketQuantity(ticketQuantity);
+		preferences.setNumberOfAdults(numberOfAdults);
+		preferences.setNumberOfChildren(numberOfChildren);
+		user.setUserPreferences(preferences);
+	}
+
+	private void addVisit(User user, double latitude, double longitude, long timeVisited) {
+		if (!(latitude >= -90 && latitude <= 90) || !(longitude >= -180 && longitude <= 180)) {
+			throw new IllegalArgumentException("Invalid history location: " + latitude + ", " + longitude);
+		}
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(latitude, longitude), new Date(timeVisited)));
+	}
+
+	private static long parseInstant(String value) {
+		try {
+			return Instant.parse(value).toEpochMilli();
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Invalid timeVisited: " + value);
+		}
+	}
+
+	private static int intField(JsonNode node, String field, int defaultValue) {
+		JsonNode value = node.path(field);
+		if (value.isMissingNode() || value.isNull()) {
+			return defaultValue;
+		}
+		if (!value.isIntegralNumber() || !value.canConvertToInt()) {
+			throw new IllegalArgumentException("Invalid " + field + ": " + value);
+		}
+		return value.intValue();
+	}
+
+	private static int parseInt(String value, int defaultValue) {
+		if (value.isBlank()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number: " + value);
+		}
+	}
+
+	private static long parseLong(String value) {
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number: " + value);
+		}
+	}
+
+	private static double parseDouble(String value) {
+		try {
+			return Double.parseDouble(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number: " + value);
+		}
+	}
+
+	/**
+	 * Reads the lines of a body, ended by '\n' or "\r\n", without keeping more
+	 * than the maximum line length of a line in memory.
+	 */
+	private static class LineReader {
+		private final Reader reader;
+		private final int maxLineLength;
+		private final char[] buffer = new char[8192];
+		private final StringBuilder line = new StringBuilder();
+		private int position;
+		private int limit;
+		private boolean tooLong;
+
+		LineReader(Reader reader, int maxLineLength) {
+			this.reader = reader;
+			this.maxLineLength = maxLineLength;
+		}
+
+		/**
+		 * Reads the next line.
+		 *
+		 * @return the line without its end, empty if it is longer than the maximum,
+		 *         or null at the end of the body
+		 */
+		String readLine() throws IOException {
+			line.setLength(0);
+			tooLong = false;
+			boolean read = false;
+			while (true) {
+				if (position == limit) {
+					limit = reader.read(buffer);
+					position = 0;
+					if (limit <= 0) {
+						limit = 0;
+						return read ? end() : null;
+					}
+				}
+				read = true;
+				int start = position;
+				while (position < limit && buffer[position] != '\n') {
+					position++;
+				}
+				if (!tooLong) {
+					line.append(buffer, start, position - start);
+					// one more character for a '\r' that ends the line
+					if (line.length() > maxLineLength + 1) {
+						tooLong = true;
+						line.setLength(0);
+					}
+				}
+				if (position < limit) {
+					position++;
+					return end();
+				}
+			}
+		}
+
+		/**
+		 * Checks if the last line read was longer than the maximum.
+		 */
+		boolean isTooLong() {
+			return tooLong;
+		}
+
+		private String end() {
+			int length = line.length();
+			if (length > 0 && line.charAt(length - 1) == '\r') {
+				length--;
+			}
+			if (length > maxLineLength) {
+				tooLong = true;
+			}
+			return tooLong ? "" : line.substring(0, length);
+		}
+	}
+
+	/**
+	 * State of one import, shared by the threads parsing its chunks.
+	 */
+	private static class Import {
+		private final Format format;
+		private final AtomicLong imported = new AtomicLong();
+		private final AtomicLong rejected = new AtomicLong();
+		private final AtomicLong skipped = new AtomicLong();
+		// the reported errors, the one with the highest line number first so that it is dropped first
+		private final PriorityQueue<UserImportErrorDto> errors =
+				new PriorityQueue<>((first, second) -> Long.compare(second.getLine(), first.getLine()));
+
+		Import(Format format) {
+			this.format = format;
+		}
+
+		void reject(long line, String message) {
+			rejected.incrementAndGet();
+			synchronized (errors) {
+				if (errors.size() < MAX_REPORTED_ERRORS) {
+					errors.add(new UserImportErrorDto(line, message));
+				} else if (line < errors.peek().getLine()) {
+					errors.poll();
+					errors.add(new UserImportErrorDto(line, message));
+				}
+			}
+		}
+
+		/**
+		 * Gets the reported errors, by line number.
+		 */
+		List<UserImportErrorDto> getErrors() {
+			List<UserImportErrorDto> sorted;
+			synchronized (errors) {
+				sorted = new ArrayList<>(errors);
+			}
+			sorted.sort((first, second) -> Long.compare(first.getLine(), second.getLine()));
+			return sorted;
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package com.openclassrooms.tourguide.service;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * WarmupHealthIndicator reports OUT_OF_SERVICE while the startup warm-up runs.
+ * It is part of the readiness group, so that no traffic is routed to the
+ * instance before the warm-up completes or times out.
+ */
+@Component("warmup")
+public class WarmupHealthIndicator implements HealthIndicator {
+	private final WarmupService warmupService;
+
+	public WarmupHealthIndicator(WarmupService warmupService) {
+		this.warmupService = warmupService;
+	}
+
+	@Override
+	public Health health() {
+		Health.Builder builder = warmupService.isReady() ? Health.up() : Health.outOfService();
+		return builder
+				.withDetail("state", warmupService.getState())
+				.withDetail("timedOut", warmupService.isTimedOut())
+				.withDetail("elapsedMillis", warmupService.getElapsedMillis())
+				.withDetail("warmedUsers", warmupService.getWarmedUsers())
+				.build();
+	}
+}
@@ -0,0 +1,236 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.openclassrooms.tourguide.user.User;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * WarmupService prepares the instance for traffic once the application has
+ * started: it loads the attraction catalog, runs the distance and nearby
+ * attractions code on synthetic locations and the reward calculation on
+ * synthetic users that are not registered, so that it gets compiled, and
+ * prefills the caches of the most recently located users. The
+ * {@link WarmupHealthIndicator} keeps the instance out of the readiness group
+ * until the warm-up is over or its timeout expires.
+ */
+@Service
+public class WarmupService {
+	private static final Logger logger = LoggerFactory.getLogger(WarmupService.class);
+	private static final int SYNTHETIC_LOCATIONS = 5000;
+	// synthetic locations are spread around the attractions, in degrees
+	private static final double SYNTHETIC_SPREAD_DEGREES = 1.0;
+	// each of them gets one reward, priced by RewardCentral
+	private static final int SYNTHETIC_USERS = 4;
+	private static final int SYNTHETIC_USER_LOCATIONS = 20;
+
+	public enum State { PENDING, WARMING_UP, COMPLETED, FAILED }
+
+	private final TourGuideService tourGuideService;
+	private final RewardsService rewardsService;
+	private final boolean enabled;
+	private final long timeoutMillis;
+	private final int prefillUsers;
+	private volatile State state = State.PENDING;
+	private volatile long startedAt;
+	private volatile long finishedAt;
+	private volatile int warmedUsers;
+
+	public WarmupService(TourGuideService tourGuideService, RewardsService rewardsService,
+			@Value("${tourguide.warmup.enabled:true}") boolean enabled,
+			@Value("${tourguide.warmup.timeout-seconds:60}") long timeoutSeconds,
+			@Value("${tourguide.warmup.prefill-users:100}") int prefillUsers) {
+		this.tourGuideService = tourGuideService;
+		this.rewardsService = rewardsService;
+		this.enabled = enabled;
+		this.timeoutMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+		this.prefillUsers = prefillUsers;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		startedAt = System.currentTimeMillis();
+		if (!enabled) {
+			state = State.COMPLETED;
+			finishedAt = startedAt;
+			return;
+		}
+		state = State.WARMING_UP;
+		Thread thread = new Thread(this::warmUp, "warmup");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Runs the warm-up steps, stopping between them once the timeout has expired.
+	 */
+	void warmUp() {
+		try {
+			AttractionCatalog.Snapshot catalog = rewardsService.getAttractionCatalog().current();
+			if (!isTimedOut()) {
+				exerciseProximityPaths(catalog);
+			}
+			if (!isTimedOut()) {
+				exerciseRewardPaths(catalog);
+			}
+			if (!isTimedOut()) {
+				prefillRecentlyLocatedUsers();
+			}
+			finishedAt = System.currentTimeMillis();
+			state = State.COMPLETED;
+			logger.info("Warm-up completed in {} ms, {} recently located users prefilled", finishedAt - startedAt, warmedUsers);
+		} catch (RuntimeException e) {
+			finishedAt = System.currentTimeMillis();
+			state = State.FAILED;
+			logger.error("Warm-up failed after {} ms", finishedAt - startedAt, e);
+		}
+	}
+
+	/**
+	 * Runs the attraction distances lookup on synthetic locations, without
+	 * recording anything on users or analytics. The candidates go to a throwaway
+	 * cache so that the cells of the synthetic locations do not evict those of
+	 * real users from the shared one.
+	 */
+	private void exerciseProximityPaths(AttractionCatalog.Snapshot catalog) {
+		List<Attraction> attractions = catalog.attractions();
+		if (attractions.isEmpty()) {
+			return;
+		}
+		NearbyAttractionCache cache = rewardsService.newNearbyAttractionCache();
+		UUID userId = UUID.randomUUID();
+		Random random = new Random(0);
+		for (int i = 0; i < SYNTHETIC_LOCATIONS && !isTimedOut(); i++) {
+			VisitedLocation visitedLocation = new VisitedLocation(userId, syntheticLocation(attractions, random), new Date());
+			rewardsService.getAttractionDistancesFromUser(visitedLocation, cache);
+		}
+	}
+
+	/**
+	 * Calculates the rewards of synthetic users, each with a history of synthetic
+	 * locations ending at an attraction. The users are not registered, so their
+	 * rewards are neither tracked nor counted in the leaderboard or popularity.
+	 */
+	private void exerciseRewardPaths(AttractionCatalog.Snapshot catalog) {
+		List<Attraction> attractions = catalog.attractions();
+		if (attractions.isEmpty()) {
+			return;
+		}
+		Random random = new Random(0);
+		int proximityBuffer = rewardsService.getProximityBuffer();
+		int rewards = 0;
+		for (int i = 0; i < SYNTHETIC_USERS && !isTimedOut(); i++) {
+			User user = new User(UUID.randomUUID(), "warmup" + i, "000", "warmup" + i + "@tourGuide.com");
+			for (int j = 0; j < SYNTHETIC_USER_LOCATIONS; j++) {
+				addVisit(user, syntheticLocation(attractions, random));
+			}
+			Attraction visited = attractions.get(random.nextInt(attractions.size()));
+			addVisit(user, new Location(visited.latitude, visited.longitude));
+			rewards += rewardsService.calculateRewards(user, attractions, proximityBuffer, false);
+		}
+		logger.debug("Warm-up exercised reward paths, {} rewards for {} synthetic users", rewards, SYNTHETIC_USERS);
+	}
+
+	private static Location syntheticLocation(List<Attraction> attractions, Random random) {
+		Attraction around = attractions.get(random.nextInt(attractions.size()));
+		return new Location(around.latitude + random.nextDouble(-SYNTHETIC_SPREAD_DEGREES, SYNTHETIC_SPREAD_DEGREES),
+				around.longitude + random.nextDouble(-SYNTHETIC_SPREAD_DEGREES, SYNTHETIC_SPREAD_DEGREES));
+	}
+
+	private static void addVisit(User user, Location location) {
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location, new Date()));
+	}
+
+	/**
+	 * Prefills the nearby attractions, reward points and trip deals of the users
+	 * with the most recent visited locations, the ones the tracker and the API are
+	 * the most likely to need first. The API activity of the users is not kept
+	 * across restarts, their visited locations are.
+	 */
+	private void prefillRecentlyLocatedUsers() {
+		for (LocatedUser located : mostRecentlyLocatedUsers()) {
+			if (isTimedOut()) {
+				return;
+			}
+			User user = located.user();
+			rewardsService.getAttractionDistancesFromUser(located.visitedLocation());
+			rewardsService.resolvePendingRewardPoints(user);
+			tourGuideService.getTripDealsService().refreshIfChanged(user);
+			warmedUsers++;
+		}
+	}
+
+	private List<LocatedUser> mostRecentlyLocatedUsers() {
+		if (prefillUsers <= 0) {
+			return List.of();
+		}
+		// min-heap of the most recently located users seen so far, with the visit
+		// time read once as the tracker may add locations meanwhile
+		PriorityQueue<LocatedUser> recent = new PriorityQueue<>(prefillUsers + 1,
+				Comparator.comparing(LocatedUser::timeVisited));
+		for (User user : tourGuideService.getTrackedUsers()) {
+			VisitedLocation visitedLocation = user.getLastVisitedLocation();
+			if (visitedLocation == null || visitedLocation.timeVisited == null) {
+				continue;
+			}
+			recent.add(new LocatedUser(user, visitedLocation));
+			if (recent.size() > prefillUsers) {
+				recent.poll();
+			}
+		}
+		List<LocatedUser> users = new ArrayList<>(recent);
+		users.sort(Comparator.comparing(LocatedUser::timeVisited).reversed());
+		return users;
+	}
+
+	private record LocatedUser(User user, VisitedLocation visitedLocation) {
+		Date timeVisited() {
+			return visitedLocation.timeVisited;
+		}
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * Checks if the warm-up is over, because it completed, failed or ran out of time.
+	 *
+	 * @return true if the instance can take traffic
+	 */
+	public boolean isReady() {
+		return state == State.COMPLETED || state == State.FAILED || isTimedOut();
+	}
+
+	public boolean isTimedOut() {
+		return state == State.WARMING_UP && System.currentTimeMillis() - startedAt > timeoutMillis;
+	}
+
+	public long getElapsedMillis() {
+		if (startedAt == 0) {
+			return 0;
+		}
+		return (state == State.WARMING_UP ? System.currentTimeMillis() : finishedAt) - startedAt;
+	}
+
+	public int getWarmedUsers() {
+		return warmedUsers;
+	}
+}
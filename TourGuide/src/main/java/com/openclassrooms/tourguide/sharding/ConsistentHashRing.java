@@ -0,0 +1,66 @@
+package com.openclassrooms.tourguide.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * ConsistentHashRing maps keys to the members of a cluster. Each member is
+ * placed several times on the ring so that ranges stay balanced, and adding or
+ * removing a member only moves the keys of the ranges it owns.
+ * Instances are immutable: a membership change builds a new ring.
+ */
+public class ConsistentHashRing {
+    private static final int VIRTUAL_NODES_PER_MEMBER = 128;
+
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+    private final List<String> members;
+
+    public ConsistentHashRing(Collection<String> members) {
+        this.members = List.copyOf(members);
+        for (String member : this.members) {
+            for (int i = 0; i < VIRTUAL_NODES_PER_MEMBER; i++) {
+                ring.put(hash(member + "#" + i), member);
+            }
+        }
+    }
+
+    /**
+     * Gets the member owning the given key.
+     *
+     * @param key the key to locate
+     * @return the owning member, or null if the ring is empty
+     */
+    public String ownerOf(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public List<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * 64-bit FNV-1a hash followed by the MurmurHash3 finalizer to spread
+     * close keys such as "internalUser1" and "internalUser2" over the ring.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
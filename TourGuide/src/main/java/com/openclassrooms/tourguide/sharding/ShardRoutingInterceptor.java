@@ -0,0 +1,57 @@
+package com.openclassrooms.tourguide.sharding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * ShardRoutingInterceptor redirects the requests made for a user owned by
+ * another instance to that instance. A 307 status is used so that the method
+ * and body of the request are kept by the client.
+ * A redirected request is marked as such, with a shardHop query parameter in
+ * the redirect location, or an X-Shard-Hop header when a proxy forwards it.
+ * While instances disagree on the membership, an instance may send a user back
+ * to the one that redirected it, so a marked request is never redirected again:
+ * it gets a 503, to be retried once the memberships converge.
+ */
+@Component
+public class ShardRoutingInterceptor implements HandlerInterceptor {
+    private static final Logger logger = LoggerFactory.getLogger(ShardRoutingInterceptor.class);
+    private static final String USER_NAME_PARAMETER = "userName";
+    public static final String HOP_PARAMETER = "shardHop";
+    public static final String HOP_HEADER = "X-Shard-Hop";
+
+    private final ShardingService shardingService;
+
+    public ShardRoutingInterceptor(ShardingService shardingService) {
+        this.shardingService = shardingService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String userName = request.getParameter(USER_NAME_PARAMETER);
+        if (!shardingService.isEnabled() || userName == null || shardingService.isLocal(userName)) {
+            return true;
+        }
+
+        String owner = shardingService.ownerOf(userName);
+        if (request.getParameter(HOP_PARAMETER) != null || request.getHeader(HOP_HEADER) != null) {
+            logger.warn("Request for user {} was already redirected and is owned by {}, membership not converged", userName, owner);
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(shardingService.getRefreshSeconds()));
+            return false;
+        }
+        String location = owner + request.getRequestURI() + "?"
+                + (request.getQueryString() != null ? request.getQueryString() + "&" : "") + HOP_PARAMETER + "=1";
+        logger.debug("Redirecting request for user {} to {}", userName, owner);
+        response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+        response.setHeader(HttpHeaders.LOCATION, location);
+        return false;
+    }
+}
@@ -0,0 +1,142 @@
+package com.openclassrooms.tourguide.sharding;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.openclassrooms.tourguide.service.TourGuideService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * ShardingService decides which TourGuide instance owns a user when several
+ * instances share the population. Users are placed on a consistent-hash ring
+ * of the instance base URLs, read either from a static list or from a
+ * membership file that is reloaded periodically so ranges rebalance when
+ * instances join or leave.
+ * When sharding is disabled, every user is owned by the local instance.
+ */
+@Service
+public class ShardingService {
+    private static final Logger logger = LoggerFactory.getLogger(ShardingService.class);
+
+    private final TourGuideService tourGuideService;
+    private final boolean enabled;
+    private final String self;
+    private final String staticMembers;
+    private final String membersFile;
+    private final long refreshSeconds;
+    private volatile ConsistentHashRing ring;
+    private ScheduledExecutorService refresher;
+
+    public ShardingService(TourGuideService tourGuideService,
+                           @Value("${tourguide.sharding.enabled:false}") boolean enabled,
+                           @Value("${tourguide.sharding.self:}") String self,
+                           @Value("${tourguide.sharding.members:}") String staticMembers,
+                           @Value("${tourguide.sharding.members-file:}") String membersFile,
+                           @Value("${tourguide.sharding.refresh-seconds:10}") long refreshSeconds) {
+        this.tourGuideService = tourGuideService;
+        this.enabled = enabled;
+        this.self = self;
+        this.staticMembers = staticMembers;
+        this.membersFile = membersFile;
+        this.refreshSeconds = refreshSeconds;
+        this.ring = new ConsistentHashRing(List.of(self));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        refreshMembership();
+        tourGuideService.setUserOwnership(user -> isLocal(user.getUserName()));
+        if (!membersFile.isBlank()) {
+            refresher = Executors.newSingleThreadScheduledExecutor();
+            refresher.scheduleWithFixedDelay(this::refreshMembership, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+        }
+        logger.info("Sharding enabled, instance {} in {}", self, ring.getMembers());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the delay between two reloads of the membership file.
+     *
+     * @return the delay in seconds
+     */
+    public long getRefreshSeconds() {
+        return refreshSeconds;
+    }
+
+    /**
+     * Checks if a user is owned by this instance.
+     *
+     * @param userName the name of the user
+     * @return true if this instance owns the user
+     */
+    public boolean isLocal(String userName) {
+        return !enabled || self.equals(ownerOf(userName));
+    }
+
+    /**
+     * Gets the base URL of the instance owning a user.
+     *
+     * @param userName the name of the user
+     * @return the base URL of the owning instance
+     */
+    public String ownerOf(String userName) {
+        return enabled ? ring.ownerOf(userName) : self;
+    }
+
+    /**
+     * Reloads the membership list and swaps the ring when it changed.
+     * The local instance is always part of the ring.
+     */
+    void refreshMembership() {
+        try {
+            List<String> members = Stream.concat(readMembers().stream(), Stream.of(self))
+                    .distinct()
+                    .sorted()
+                    .toList();
+            if (!members.equals(ring.getMembers())) {
+                ring = new ConsistentHashRing(members);
+                logger.info("Sharding membership changed: {}", members);
+            }
+        } catch (IOException e) {
+            logger.error("Error reading sharding membership file: {}", membersFile, e);
+        }
+    }
+
+    private List<String> readMembers() throws IOException {
+        List<String> lines = membersFile.isBlank()
+                ? Arrays.asList(staticMembers.split(","))
+                : Files.readAllLines(Path.of(membersFile));
+        return lines.stream()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .map(line -> line.endsWith("/") ? line.substring(0, line.length() - 1) : line)
+                .toList();
+    }
+}
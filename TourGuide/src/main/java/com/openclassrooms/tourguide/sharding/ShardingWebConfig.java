@@ -0,0 +1,20 @@
+package com.openclassrooms.tourguide.sharding;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class ShardingWebConfig implements WebMvcConfigurer {
+
+    private final ShardRoutingInterceptor shardRoutingInterceptor;
+
+    public ShardingWebConfig(ShardRoutingInterceptor shardRoutingInterceptor) {
+        this.shardRoutingInterceptor = shardRoutingInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(shardRoutingInterceptor);
+    }
+}
@@ -0,0 +1,169 @@
+package com.openclassrooms.tourguide.tracing;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.slf4j.MDC;
+
+/**
+ * RequestTrace records how long the stages of one request take. The trace of
+ * the current request is held by the thread serving it, and follows the tasks
+ * it hands to executors when they are wrapped with {@link #wrap(Runnable)},
+ * {@link #wrap(Supplier)} or run on a {@link #propagating(Executor)} executor.
+ * Outside of a request, spans and wrappers do nothing and cost close to nothing.
+ */
+public class RequestTrace {
+    public static final String MDC_KEY = "requestId";
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+    private static final Span NOOP_SPAN = () -> { };
+
+    private final String requestId;
+    private final long startNanos = System.nanoTime();
+    private final Queue<Timing> timings = new ConcurrentLinkedQueue<>();
+
+    public RequestTrace(String requestId) {
+        this.requestId = requestId;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Gets the trace of the request served by the current thread.
+     *
+     * @return the trace, or null outside of a request
+     */
+    public static RequestTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes a trace the current one of this thread, or clears it when null.
+     *
+     * @param trace the trace of the request served by this thread
+     */
+    public static void setCurrent(RequestTrace trace) {
+        if (trace == null) {
+            CURRENT.remove();
+            MDC.remove(MDC_KEY);
+        } else {
+            CURRENT.set(trace);
+            MDC.put(MDC_KEY, trace.requestId);
+        }
+    }
+
+    /**
+     * Starts a span of the current request, to be closed when the stage is over.
+     *
+     * @param name the name of the stage, used as Server-Timing metric name
+     * @return the span, which does nothing outside of a request
+     */
+    public static Span span(String name) {
+        RequestTrace trace = CURRENT.get();
+        if (trace == null) {
+            return NOOP_SPAN;
+        }
+        long start = System.nanoTime();
+        return () -> trace.timings.add(new Timing(name, System.nanoTime() - start));
+    }
+
+    public static Runnable wrap(Runnable task) {
+        RequestTrace trace = CURRENT.get();
+        if (trace == null) {
+            return task;
+        }
+        return () -> {
+            RequestTrace previous = CURRENT.get();
+            setCurrent(trace);
+            try {
+                task.run();
+            } finally {
+                setCurrent(previous);
+            }
+        };
+    }
+
+    public static <T> Supplier<T> wrap(Supplier<T> task) {
+        RequestTrace trace = CURRENT.get();
+        if (trace == null) {
+            return task;
+        }
+        return () -> {
+            RequestTrace previous = CURRENT.get();
+            setCurrent(trace);
+            try {
+                return task.get();
+            } finally {
+                setCurrent(previous);
+            }
+        };
+    }
+
+    /**
+     * Wraps an executor so that the tasks it runs belong to the request that submitted them.
+     *
+     * @param executor the executor to wrap
+     * @return the propagating executor
+     */
+    public static Executor propagating(Executor executor) {
+        return task -> executor.execute(wrap(task));
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Sums the spans of the same name, in the order they were first recorded.
+     *
+     * @return the total duration and count of each span name
+     */
+    public Map<String, long[]> getTimings() {
+        Map<String, long[]> totals = new LinkedHashMap<>();
+        for (Timing timing : timings) {
+            long[] total = totals.computeIfAbsent(timing.name(), name -> new long[2]);
+            total[0] += timing.nanos();
+            total[1]++;
+        }
+        return totals;
+    }
+
+    /**
+     * Formats the spans as a Server-Timing header value, durations in milliseconds.
+     *
+     * @return e.g. getUserLocation;dur=1.20, rewardCentral;dur=40.10;desc="5 calls", total;dur=45.00
+     */
+    public String toServerTiming() {
+        StringBuilder header = new StringBuilder();
+        getTimings().forEach((name, total) -> {
+            header.append(name).append(";dur=").append(millis(total[0]));
+            if (total[1] > 1) {
+                header.append(";desc=\"").append(total[1]).append(" calls\"");
+            }
+            header.append(", ");
+        });
+        return header.append("total;dur=").append(millis(getElapsedNanos())).toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+    }
+
+    /**
+     * Stage of a request, closed when the stage is over.
+     */
+    @FunctionalInterface
+    public interface Span extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private record Timing(String name, long nanos) {
+    }
+}
@@ -0,0 +1,35 @@
+package com.openclassrooms.tourguide.tracing;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * ServerTimingAdvice adds the Server-Timing header of the current request
+ * trace to the response, once the controller is done and before its body is
+ * written, while the headers can still be set.
+ */
+@ControllerAdvice
+public class ServerTimingAdvice implements ResponseBodyAdvice<Object> {
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        RequestTrace trace = RequestTrace.current();
+        if (trace != null) {
+            response.getHeaders().set(SERVER_TIMING_HEADER, trace.toServerTiming());
+        }
+        return body;
+    }
+}
@@ -0,0 +1,64 @@
+package com.openclassrooms.tourguide.tracing;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * TracingFilter starts a {@link RequestTrace} for each request, under the
+ * request id of the X-Request-Id header or a new one, and returns the id in
+ * the response. The Server-Timing header is added by {@link ServerTimingAdvice}
+ * just before the body is written. A sample of the traces, and every request
+ * slower than the slow request threshold, are logged with their spans.
+ */
+@Component
+public class TracingFilter extends OncePerRequestFilter {
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+    private static final Logger logger = LoggerFactory.getLogger(TracingFilter.class);
+
+    private final double sampleRate;
+    private final long slowRequestNanos;
+
+    public TracingFilter(@Value("${tourguide.tracing.sample-rate:0.01}") double sampleRate,
+                         @Value("${tourguide.tracing.slow-request-millis:1000}") long slowRequestMillis) {
+        this.sampleRate = sampleRate;
+        this.slowRequestNanos = TimeUnit.MILLISECONDS.toNanos(slowRequestMillis);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String requestId = request.getHeader(REQUEST_ID_HEADER);
+        if (requestId == null || requestId.isBlank() || requestId.length() > 64) {
+            requestId = UUID.randomUUID().toString();
+        }
+        RequestTrace trace = new RequestTrace(requestId);
+        response.setHeader(REQUEST_ID_HEADER, requestId);
+        RequestTrace.setCurrent(trace);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (!response.isCommitted() && !response.containsHeader(ServerTimingAdvice.SERVER_TIMING_HEADER)) {
+                response.setHeader(ServerTimingAdvice.SERVER_TIMING_HEADER, trace.toServerTiming());
+            }
+            long elapsedNanos = trace.getElapsedNanos();
+            if (elapsedNanos >= slowRequestNanos || ThreadLocalRandom.current().nextDouble() < sampleRate) {
+                logger.info("Trace {} {} {} {} in {} ms: {}", requestId, request.getMethod(), request.getRequestURI(),
+                        response.getStatus(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), trace.toServerTiming());
+            }
+            RequestTrace.setCurrent(null);
+        }
+    }
+}
@@ -1,33 +1,73 @@
 package com.openclassrooms.tourguide.tracker;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
 
+import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 /**
- * Tracker is a thread that periodically tracks the location of all users
- * registered in the TourGuideService. It runs in a separate thread and
- * updates user locations at regular intervals.
+ * Tracker is a thread that tracks the location of all users registered in the
+ * TourGuideService. Each user is polled when its next due time, computed by the
+ * TrackingScheduler, is reached. Newly registered users are picked up at
+ * regular intervals, and only the users owned by this instance are tracked.
+ * Due users are tracked in batches, each batch being a single task of the
+ * TourGuideService executor.
  */
 public class Tracker extends Thread {
 	private Logger logger = LoggerFactory.getLogger(Tracker.class);
-	private static final long trackingPollingInterval = TimeUnit.MINUTES.toSeconds(5);
+	private static final long userSyncInterval = TimeUnit.MINUTES.toMillis(1);
 	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
 	private final TourGuideService tourGuideService;
+	private final TrackingScheduler scheduler;
+	private final TrackerMetrics metrics;
+	private volatile int batchSize = 100;
 	private boolean stop = false;
+	private boolean started = false;
+
+	public Tracker(TourGuideService tourGuideService, RewardsService rewardsService) {
+		this(tourGuideService, rewardsService, true);
+	}
 
-	public Tracker(TourGuideService tourGuideService) {
+	public Tracker(TourGuideService tourGuideService, RewardsService rewardsService, boolean start) {
+		this(tourGuideService, rewardsService, start, new SimpleMeterRegistry());
+	}
+
+	/**
+	 * Creates a Tracker publishing its metrics to a registry. They are removed
+	 * from it when the tracker stops.
+	 */
+	public Tracker(TourGuideService tourGuideService, RewardsService rewardsService, boolean start,
+			MeterRegistry meterRegistry) {
 		this.tourGuideService = tourGuideService;
+		this.scheduler = new TrackingScheduler(rewardsService::getDistance);
+		this.metrics = new TrackerMetrics(meterRegistry, tourGuideService, scheduler);
 
-		executorService.submit(this);
+		if (start) {
+			startTracking();
+		}
+	}
+
+	/**
+	 * Starts the Tracker thread, when it was created without starting it.
+	 */
+	public synchronized void startTracking() {
+		if (!started && !stop) {
+			started = true;
+			executorService.submit(this);
+		}
 	}
 
 	/**
@@ -36,31 +76,130 @@ public class Tracker extends Thread {
 	public void stopTracking() {
 		stop = true;
 		executorService.shutdownNow();
+		metrics.close();
+	}
+
+	public TrackingScheduler getScheduler() {
+		return scheduler;
+	}
+
+	public TrackerMetrics getMetrics() {
+		return metrics;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Sets the maximum number of users tracked by a single task. Smaller batches
+	 * are used when there are not enough due users to keep every tracking thread busy.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
 	}
 
 	@Override
 	public void run() {
-		StopWatch stopWatch = new StopWatch();
+		long nextUserSync = 0;
 		while (true) {
 			if (Thread.currentThread().isInterrupted() || stop) {
 				logger.debug("Tracker stopping");
 				break;
 			}
 
-			List<User> users = tourGuideService.getAllUsers();
-			logger.debug("Begin Tracker. Tracking " + users.size() + " users.");
-			stopWatch.start();
-			users.forEach(u -> tourGuideService.trackUserLocationAsync(u));
-			stopWatch.stop();
-			logger.debug("Tracker Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
-			stopWatch.reset();
+			long now = System.currentTimeMillis();
+			if (now >= nextUserSync) {
+				syncUsers(now);
+				nextUserSync = now + userSyncInterval;
+			}
+
+			List<User> dueUsers = scheduler.pollDue(now);
+			if (!dueUsers.isEmpty()) {
+				logger.debug("Begin Tracker. Tracking " + dueUsers.size() + " due users out of " + scheduler.size() + ".");
+				track(dueUsers);
+			}
+
 			try {
-				logger.debug("Tracker sleeping");
-				TimeUnit.SECONDS.sleep(trackingPollingInterval);
+				long sleepMillis = Math.min(scheduler.nextDueTime(), nextUserSync) - System.currentTimeMillis();
+				if (sleepMillis > 0) {
+					logger.debug("Tracker sleeping " + TimeUnit.MILLISECONDS.toSeconds(sleepMillis) + " seconds");
+					TimeUnit.MILLISECONDS.sleep(sleepMillis);
+				}
 			} catch (InterruptedException e) {
 				break;
 			}
 		}
 
 	}
+
+	/**
+	 * Schedules the users registered since the last synchronization so that they
+	 * are tracked right away.
+	 */
+	private void syncUsers(long now) {
+		long added = tourGuideService.getTrackedUsers().stream()
+				.filter(user -> scheduler.scheduleIfAbsent(user, now))
+				.count();
+		if (added > 0) {
+			logger.debug("Tracker scheduled " + added + " new users.");
+		}
+	}
+
+	private void track(List<User> dueUsers) {
+		long cycleStart = System.currentTimeMillis();
+		List<User> ownedUsers = new ArrayList<>(dueUsers.size());
+		for (User user : dueUsers) {
+			if (tourGuideService.isOwnedUser(user)) {
+				ownedUsers.add(user);
+			} else {
+				// the user moved to another instance, it is scheduled again if it comes back
+				scheduler.unschedule(user);
+			}
+		}
+		int parallelism = tourGuideService.getTrackingParallelism();
+		int size = Math.max(1, Math.min(batchSize, (ownedUsers.size() + parallelism - 1) / parallelism));
+		List<CompletableFuture<Integer>> batches = new ArrayList<>();
+		for (int from = 0; from < ownedUsers.size(); from += size) {
+			batches.add(trackBatch(ownedUsers.subList(from, Math.min(from + size, ownedUsers.size()))));
+		}
+		CompletableFuture.allOf(batches.toArray(new CompletableFuture[0]))
+				.thenRun(() -> {
+					int failures = batches.stream().mapToInt(CompletableFuture::join).sum();
+					metrics.recordCycle(ownedUsers.size(), failures, System.currentTimeMillis() - cycleStart);
+				});
+	}
+
+	/**
+	 * Tracks a batch of users and reschedules them. When the whole batch fails,
+	 * e.g. because it was rejected by the executor, each of its users counts as a
+	 * failure and is polled again after its minimum interval.
+	 *
+	 * @return a CompletableFuture containing the number of users whose tracking failed
+	 */
+	private CompletableFuture<Integer> trackBatch(List<User> batch) {
+		List<VisitedLocation> previousLocations = new ArrayList<>(batch.size());
+		batch.forEach(user -> previousLocations.add(user.getLastVisitedLocation()));
+		CompletableFuture<List<VisitedLocation>> tracking;
+		try {
+			tracking = tourGuideService.trackUserLocationsBatchAsync(batch);
+		} catch (RuntimeException e) {
+			tracking = CompletableFuture.failedFuture(e);
+		}
+		return tracking.handle((visitedLocations, throwable) -> {
+			if (throwable != null) {
+				logger.error("Error tracking a batch of " + batch.size() + " users", throwable);
+			}
+			long now = System.currentTimeMillis();
+			int failures = 0;
+			for (int i = 0; i < batch.size(); i++) {
+				VisitedLocation visitedLocation = throwable == null ? visitedLocations.get(i) : null;
+				scheduler.reschedule(batch.get(i), previousLocations.get(i), visitedLocation, now);
+				if (visitedLocation == null) {
+					failures++;
+				}
+			}
+			return failures;
+		});
+	}
 }
@@ -0,0 +1,41 @@
+package com.openclassrooms.tourguide.tracker;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.tourguide.service.TourGuideService;
+
+/**
+ * TrackerHealthIndicator reports the tracker DOWN when it falls behind: when
+ * the 99th percentile of the age of the tracked locations exceeds the polling
+ * interval of the users by more than the configured factor.
+ */
+@Component("tracker")
+public class TrackerHealthIndicator implements HealthIndicator {
+    private final TourGuideService tourGuideService;
+    private final double stalenessFactor;
+
+    public TrackerHealthIndicator(TourGuideService tourGuideService,
+                                  @Value("${tourguide.tracker.health.staleness-factor:3}") double stalenessFactor) {
+        this.tourGuideService = tourGuideService;
+        this.stalenessFactor = stalenessFactor;
+    }
+
+    @Override
+    public Health health() {
+        TrackerMetrics metrics = tourGuideService.tracker.getMetrics();
+        TrackerMetrics.Staleness staleness = metrics.getStaleness();
+        Health.Builder builder = staleness.p99Lateness() > stalenessFactor ? Health.down() : Health.up();
+        return builder
+                .withDetail("trackedUsers", staleness.users())
+                .withDetail("p50LocationAgeSeconds", staleness.p50AgeMillis() / 1000)
+                .withDetail("p99LocationAgeSeconds", staleness.p99AgeMillis() / 1000)
+                .withDetail("p99Lateness", staleness.p99Lateness())
+                .withDetail("stalenessFactor", stalenessFactor)
+                .withDetail("lastCycleMillis", metrics.getLastCycleMillis())
+                .withDetail("trackedUsersPerSecond", metrics.getTrackedUsersPerSecond())
+                .build();
+    }
+}
@@ -0,0 +1,152 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * TrackerMetrics measures how well the Tracker keeps up with the population.
+ * A cycle is the tracking of every user due at once, timed from polling until
+ * the last of its batches completes. Staleness is the age of the last
+ * successful location of each tracked user; lateness divides that age by the
+ * polling interval of the user, so that a lateness above 1 means the user
+ * missed its poll. Staleness percentiles are computed over the whole
+ * population, at most once per refresh interval.
+ * The meters are registered by a single instance per registry, and removed
+ * from it when the tracker stops.
+ */
+public class TrackerMetrics {
+    private static final long STALENESS_REFRESH_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final TourGuideService tourGuideService;
+    private final TrackingScheduler scheduler;
+    private final MeterRegistry registry;
+    private final List<Meter> meters = new ArrayList<>();
+    private final long startTime = System.currentTimeMillis();
+    private final Timer cycleTimer;
+    private final Counter trackedUsers;
+    private final Counter failedUsers;
+    private volatile long lastCycleMillis;
+    private volatile double trackedUsersPerSecond;
+    private volatile Staleness staleness;
+
+    public TrackerMetrics(MeterRegistry registry, TourGuideService tourGuideService, TrackingScheduler scheduler) {
+        this.tourGuideService = tourGuideService;
+        this.scheduler = scheduler;
+        this.registry = registry;
+        this.cycleTimer = register(Timer.builder("tourguide.tracker.cycle")
+                .description("Time to track all the users due at once")
+                .publishPercentileHistogram()
+                .register(registry));
+        this.trackedUsers = register(Counter.builder("tourguide.tracker.users.tracked").register(registry));
+        this.failedUsers = register(Counter.builder("tourguide.tracker.users.failed").register(registry));
+        register(Gauge.builder("tourguide.tracker.users.per.second", this, TrackerMetrics::getTrackedUsersPerSecond)
+                .register(registry));
+        register(Gauge.builder("tourguide.tracker.location.age", this, metrics -> metrics.getStaleness().p50AgeMillis() / 1000.0)
+                .tag("quantile", "0.5").baseUnit("seconds").register(registry));
+        register(Gauge.builder("tourguide.tracker.location.age", this, metrics -> metrics.getStaleness().p99AgeMillis() / 1000.0)
+                .tag("quantile", "0.99").baseUnit("seconds").register(registry));
+        register(Gauge.builder("tourguide.tracker.lateness", this, metrics -> metrics.getStaleness().p99Lateness())
+                .tag("quantile", "0.99").register(registry));
+    }
+
+    private <T extends Meter> T register(T meter) {
+        meters.add(meter);
+        return meter;
+    }
+
+    /**
+     * Removes the meters from the registry, e.g. when the tracker stops, so that
+     * another tracker can register its own.
+     */
+    void close() {
+        meters.forEach(registry::remove);
+    }
+
+    /**
+     * Records a completed cycle.
+     *
+     * @param users          the number of users of the cycle
+     * @param failures       the number of users whose tracking failed
+     * @param durationMillis the time from polling to the completion of the last batch
+     */
+    void recordCycle(int users, int failures, long durationMillis) {
+        cycleTimer.record(durationMillis, TimeUnit.MILLISECONDS);
+        trackedUsers.increment(users - failures);
+        failedUsers.increment(failures);
+        lastCycleMillis = durationMillis;
+        trackedUsersPerSecond = durationMillis > 0 ? users * 1000.0 / durationMillis : users;
+    }
+
+    public long getLastCycleMillis() {
+        return lastCycleMillis;
+    }
+
+    public double getTrackedUsersPerSecond() {
+        return trackedUsersPerSecond;
+    }
+
+    /**
+     * Gets the staleness of the tracked users, recomputed if the last computation is too old.
+     *
+     * @return the staleness percentiles
+     */
+    public Staleness getStaleness() {
+        Staleness current = staleness;
+        long now = System.currentTimeMillis();
+        if (current == null || now - current.computedAt() > STALENESS_REFRESH_MILLIS) {
+            current = computeStaleness(now);
+            staleness = current;
+        }
+        return current;
+    }
+
+    private Staleness computeStaleness(long now) {
+        List<User> users = tourGuideService.getTrackedUsers();
+        if (users.isEmpty()) {
+            return new Staleness(0, 0, 0, 0, now);
+        }
+        Map<UUID, Long> intervals = scheduler.getIntervals();
+        long[] ages = new long[users.size()];
+        double[] lateness = new double[users.size()];
+        for (int i = 0; i < ages.length; i++) {
+            User user = users.get(i);
+            Date latest = user.getLatestLocationTimestamp();
+            // users never tracked are as stale as the time spent since the tracker started
+            ages[i] = Math.max(0, now - (latest != null ? latest.getTime() : startTime));
+            long interval = intervals.getOrDefault(user.getUserId(), user.getTrackingPriority().getMinIntervalMillis());
+            lateness[i] = (double) ages[i] / interval;
+        }
+        Arrays.sort(ages);
+        Arrays.sort(lateness);
+        return new Staleness(users.size(), ages[percentileIndex(ages.length, 0.5)],
+                ages[percentileIndex(ages.length, 0.99)], lateness[percentileIndex(lateness.length, 0.99)], now);
+    }
+
+    private static int percentileIndex(int size, double percentile) {
+        return (int) Math.min(size - 1, Math.max(0, Math.ceil(percentile * size) - 1));
+    }
+
+    /**
+     * @param users        the number of tracked users
+     * @param p50AgeMillis the median age of the last successful locations
+     * @param p99AgeMillis the 99th percentile of the age of the last successful locations
+     * @param p99Lateness  the 99th percentile of the age divided by the polling interval
+     * @param computedAt   the time of the computation in milliseconds
+     */
+    public record Staleness(int users, long p50AgeMillis, long p99AgeMillis, double p99Lateness, long computedAt) {
+    }
+}
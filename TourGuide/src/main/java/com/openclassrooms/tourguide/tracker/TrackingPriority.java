@@ -0,0 +1,30 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TrackingPriority defines the polling bounds used by the TrackingScheduler.
+ * A user is polled at the minimum interval of its tier while moving or active,
+ * and backs off up to the maximum interval while idle.
+ */
+public enum TrackingPriority {
+    HIGH(TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(5)),
+    NORMAL(TimeUnit.MINUTES.toMillis(5), TimeUnit.MINUTES.toMillis(30)),
+    LOW(TimeUnit.MINUTES.toMillis(15), TimeUnit.MINUTES.toMillis(120));
+
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+
+    TrackingPriority(long minIntervalMillis, long maxIntervalMillis) {
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+    }
+
+    public long getMinIntervalMillis() {
+        return minIntervalMillis;
+    }
+
+    public long getMaxIntervalMillis() {
+        return maxIntervalMillis;
+    }
+}
@@ -0,0 +1,184 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleBiFunction;
+
+import com.openclassrooms.tourguide.user.User;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * TrackingScheduler keeps every tracked user in a priority queue ordered by the
+ * time its next location poll is due. The next due time of a user is derived
+ * from its priority tier, its movement between the last two polls and its
+ * recent API activity: moving or active users are polled at the minimum
+ * interval of their tier, idle users back off exponentially up to the maximum.
+ * A user that becomes active, or whose tier changes, is brought forward to the
+ * minimum interval of its tier without waiting for its backed off poll.
+ */
+public class TrackingScheduler {
+    // distance in miles under which a user is considered idle between two polls
+    static final double MOVEMENT_THRESHOLD_MILES = 0.1;
+    static final long ACTIVITY_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private final ToDoubleBiFunction<Location, Location> distanceMiles;
+    private final PriorityQueue<ScheduledUser> queue =
+            new PriorityQueue<>(Comparator.comparingLong(ScheduledUser::dueTime));
+    // current entry of each queued user, entries of the queue not found here were replaced
+    private final Map<UUID, ScheduledUser> queued = new HashMap<>();
+    // last interval applied to each known user, including users currently being tracked
+    private final Map<UUID, Long> intervals = new HashMap<>();
+
+    /**
+     * Creates a TrackingScheduler.
+     *
+     * @param distanceMiles the distance in miles between two locations
+     */
+    public TrackingScheduler(ToDoubleBiFunction<Location, Location> distanceMiles) {
+        this.distanceMiles = distanceMiles;
+    }
+
+    /**
+     * Schedules a user that is not known yet by the scheduler.
+     *
+     * @param user    the user to schedule
+     * @param dueTime the time in milliseconds at which the user should be tracked
+     * @return true if the user was added, false if it was already scheduled
+     */
+    public synchronized boolean scheduleIfAbsent(User user, long dueTime) {
+        if (intervals.containsKey(user.getUserId())) {
+            return false;
+        }
+        intervals.put(user.getUserId(), user.getTrackingPriority().getMinIntervalMillis());
+        enqueue(user, dueTime);
+        return true;
+    }
+
+    /**
+     * Brings the next poll of a queued user forward to the minimum interval of its
+     * tier, e.g. when it becomes active or its tier changes. A user being tracked
+     * is left as is, its next interval is computed when it is rescheduled.
+     *
+     * @param user the user to bring forward
+     * @param now  the current time in milliseconds
+     * @return true if the next poll was brought forward
+     */
+    public synchronized boolean expedite(User user, long now) {
+        ScheduledUser scheduled = queued.get(user.getUserId());
+        long minInterval = user.getTrackingPriority().getMinIntervalMillis();
+        if (scheduled == null || scheduled.dueTime() <= now + minInterval) {
+            return false;
+        }
+        intervals.put(user.getUserId(), minInterval);
+        enqueue(user, now + minInterval);
+        return true;
+    }
+
+    /**
+     * Forgets a user that has just been polled so that it can be scheduled again later.
+     *
+     * @param user the user to forget
+     */
+    public synchronized void unschedule(User user) {
+        intervals.remove(user.getUserId());
+        queued.remove(user.getUserId());
+    }
+
+    /**
+     * Reschedules a user once its location has been tracked.
+     *
+     * @param user             the tracked user
+     * @param previousLocation the location known before the poll, may be null
+     * @param newLocation      the location returned by the poll, null if the poll failed
+     * @param now              the current time in milliseconds
+     * @return the due time of the next poll
+     */
+    public synchronized long reschedule(User user, VisitedLocation previousLocation, VisitedLocation newLocation, long now) {
+        long interval = computeNextInterval(user, previousLocation, newLocation, now);
+        intervals.put(user.getUserId(), interval);
+        long dueTime = now + interval;
+        enqueue(user, dueTime);
+        return dueTime;
+    }
+
+    /**
+     * Removes and returns every user whose next poll is due.
+     *
+     * @param now the current time in milliseconds
+     * @return the users to track, in due order
+     */
+    public synchronized List<User> pollDue(long now) {
+        List<User> dueUsers = new ArrayList<>();
+        while (!queue.isEmpty() && queue.peek().dueTime() <= now) {
+            ScheduledUser scheduled = queue.poll();
+            if (queued.remove(scheduled.user().getUserId(), scheduled)) {
+                dueUsers.add(scheduled.user());
+            }
+        }
+        return dueUsers;
+    }
+
+    /**
+     * Gets the time at which the next poll is due.
+     *
+     * @return the due time in milliseconds, or Long.MAX_VALUE if nothing is scheduled
+     */
+    public synchronized long nextDueTime() {
+        // replaced entries are dropped here so that they do not wake the tracker up
+        while (!queue.isEmpty() && !queue.peek().equals(queued.get(queue.peek().user().getUserId()))) {
+            queue.poll();
+        }
+        return queue.isEmpty() ? Long.MAX_VALUE : queue.peek().dueTime();
+    }
+
+    public synchronized int size() {
+        return intervals.size();
+    }
+
+    /**
+     * Gets a copy of the polling interval of every known user.
+     *
+     * @return the intervals in milliseconds, by user id
+     */
+    public synchronized Map<UUID, Long> getIntervals() {
+        return new HashMap<>(intervals);
+    }
+
+    /**
+     * Computes the delay before the next poll of a user.
+     *
+     * @param user             the tracked user
+     * @param previousLocation the location known before the poll, may be null
+     * @param newLocation      the location returned by the poll, null if the poll failed
+     * @param now              the current time in milliseconds
+     * @return the delay in milliseconds
+     */
+    long computeNextInterval(User user, VisitedLocation previousLocation, VisitedLocation newLocation, long now) {
+        TrackingPriority priority = user.getTrackingPriority();
+        boolean recentlyActive = now - user.getLastActivityTime() < ACTIVITY_WINDOW_MILLIS;
+        if (newLocation == null || previousLocation == null || recentlyActive
+                || distanceMiles.applyAsDouble(previousLocation.location, newLocation.location) >= MOVEMENT_THRESHOLD_MILES) {
+            return priority.getMinIntervalMillis();
+        }
+
+        long lastInterval = intervals.getOrDefault(user.getUserId(), priority.getMinIntervalMillis());
+        return Math.min(Math.max(lastInterval * 2, priority.getMinIntervalMillis()), priority.getMaxIntervalMillis());
+    }
+
+    private void enqueue(User user, long dueTime) {
+        ScheduledUser scheduled = new ScheduledUser(user, dueTime);
+        queued.put(user.getUserId(), scheduled);
+        queue.add(scheduled);
+    }
+
+    private record ScheduledUser(User user, long dueTime) {
+    }
+}
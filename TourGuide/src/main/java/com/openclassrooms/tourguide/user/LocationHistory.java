@@ -0,0 +1,205 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * LocationHistory stores the visited locations of a user ordered by visit time,
+ * so that time range and point-in-time lookups are answered by binary search.
+ * New locations are usually the most recent ones and are appended in constant
+ * time; older ones are inserted at their place.
+ * Readers share a read lock and always get copies, never the live storage.
+ */
+public class LocationHistory {
+	private final ArrayList<VisitedLocation> locations = new ArrayList<>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	public void add(VisitedLocation visitedLocation) {
+		lock.writeLock().lock();
+		try {
+			locations.add(upperBound(time(visitedLocation)), visitedLocation);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the most recent location.
+	 *
+	 * @return the most recent location, or null if the history is empty
+	 */
+	public VisitedLocation getLatest() {
+		lock.readLock().lock();
+		try {
+			return locations.isEmpty() ? null : locations.get(locations.size() - 1);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets where the user was at a given time, which is the last location visited
+	 * at or before that time.
+	 *
+	 * @param time the time to look up
+	 * @return the location, or null if the history starts after that time
+	 */
+	public VisitedLocation getAt(Date time) {
+		lock.readLock().lock();
+		try {
+			int index = upperBound(time.getTime()) - 1;
+			return index >= 0 ? locations.get(index) : null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets a page of the locations visited within a time range, oldest first.
+	 *
+	 * @param from   the start of the range, inclusive
+	 * @param to     the end of the range, inclusive
+	 * @param offset the number of locations of the range to skip
+	 * @param limit  the maximum number of locations to return
+	 * @return the locations of the page
+	 */
+	public List<VisitedLocation> getBetween(Date from, Date to, int offset, int limit) {
+		lock.readLock().lock();
+		try {
+			// in long, a large offset or limit must not wrap around
+			long start = lowerBound(from.getTime()) + (long) Math.max(offset, 0);
+			long end = Math.min(upperBound(to.getTime()), start + Math.max(limit, 0));
+			return start < end ? new ArrayList<>(locations.subList((int) start, (int) end)) : new ArrayList<>();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets a copy of the whole history, oldest first.
+	 *
+	 * @return the visited locations
+	 */
+	public List<VisitedLocation> toList() {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<>(locations);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return locations.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Applies a retention policy: locations visited before dropBefore are removed,
+	 * the ones visited before fullResolutionSince are downsampled to the first of
+	 * each bucket, and the more recent ones are kept. The latest location is
+	 * always kept, so that the user still has a last known location.
+	 *
+	 * @param dropBefore          the time before which locations are removed
+	 * @param fullResolutionSince the time from which every location is kept
+	 * @param bucketMillis        the length of the downsampling buckets
+	 * @return the number of removed locations
+	 */
+	public int compact(long dropBefore, long fullResolutionSince, long bucketMillis) {
+		lock.writeLock().lock();
+		try {
+			int size = locations.size();
+			if (size <= 1 || time(locations.get(0)) >= fullResolutionSince) {
+				return 0;
+			}
+			int kept = 0;
+			long lastBucket = Long.MIN_VALUE;
+			for (int i = 0; i < size; i++) {
+				VisitedLocation visitedLocation = locations.get(i);
+				long time = time(visitedLocation);
+				if (i < size - 1 && time < fullResolutionSince) {
+					if (time < dropBefore) {
+						continue;
+					}
+					long bucket = Math.floorDiv(time, bucketMillis);
+					if (bucket == lastBucket) {
+						continue;
+					}
+					lastBucket = bucket;
+				}
+				locations.set(kept++, visitedLocation);
+			}
+			if (kept < size) {
+				locations.subList(kept, size).clear();
+				locations.trimToSize();
+			}
+			return size - kept;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			locations.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Index of the first location visited at or after the given time.
+	 */
+	private int lowerBound(long time) {
+		int low = 0;
+		int high = locations.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (time(locations.get(middle)) < time) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Index of the first location visited strictly after the given time.
+	 */
+	private int upperBound(long time) {
+		int size = locations.size();
+		if (size == 0 || time(locations.get(size - 1)) <= time) {
+			return size;
+		}
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (time(locations.get(middle)) <= time) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private static long time(VisitedLocation visitedLocation) {
+		return visitedLocation.timeVisited != null ? visitedLocation.timeVisited.getTime() : Long.MIN_VALUE;
+	}
+}
@@ -4,20 +4,32 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.openclassrooms.tourguide.tracker.TrackingPriority;
 
 import gpsUtil.location.VisitedLocation;
 import tripPricer.Provider;
 
 public class User {
+	// incremented on every change of the visited locations of any user of this instance
+	private static final AtomicLong locationSequence = new AtomicLong();
 	private final UUID userId;
 	private final String userName;
 	private String phoneNumber;
 	private String emailAddress;
-	private Date latestLocationTimestamp;
-	private List<VisitedLocation> visitedLocations = new ArrayList<>();
-	private List<UserReward> userRewards = new ArrayList<>();
+	private volatile Date latestLocationTimestamp;
+	private final LocationHistory visitedLocations = new LocationHistory();
+	private List<UserReward> userRewards = new CopyOnWriteArrayList<>();
+	private volatile int cumulativeRewardPoints;
 	private UserPreferences userPreferences = new UserPreferences();
-	private List<Provider> tripDeals = new ArrayList<>();
+	private volatile List<Provider> tripDeals = new ArrayList<>();
+	private volatile int tripDealsFingerprint;
+	private volatile long tripDealsTimestamp;
+	private TrackingPriority trackingPriority = TrackingPriority.NORMAL;
+	private volatile long lastActivityTime;
+	private volatile long locationChangeSequence;
 	public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
 		this.userId = userId;
 		this.userName = userName;
@@ -59,20 +71,75 @@ public class User {
 	
 	public void addToVisitedLocations(VisitedLocation visitedLocation) {
 		visitedLocations.add(visitedLocation);
+		locationChangeSequence = locationSequence.incrementAndGet();
 	}
 	
+	/**
+	 * Gets a copy of the visited locations, ordered by visit time.
+	 *
+	 * @return the visited locations
+	 */
 	public List<VisitedLocation> getVisitedLocations() {
+		return visitedLocations.toList();
+	}
+
+	public LocationHistory getLocationHistory() {
 		return visitedLocations;
 	}
 	
 	public void clearVisitedLocations() {
 		visitedLocations.clear();
+		locationChangeSequence = locationSequence.incrementAndGet();
 	}
-	
-	public void addUserReward(UserReward userReward) {
+
+	/**
+	 * Gets the position of the last change of the visited locations of this user
+	 * in the sequence of the location changes of every user, whatever the visit
+	 * time of the locations, e.g. for imported histories or late fixes.
+	 *
+	 * @return the sequence number of the last change, 0 if there was none
+	 */
+	public long getLocationChangeSequence() {
+		return locationChangeSequence;
+	}
+
+	/**
+	 * Gets the sequence number of the last location change of any user. A change
+	 * made after this call gets a greater sequence number.
+	 *
+	 * @return the current sequence number
+	 */
+	public static long currentLocationSequence() {
+		return locationSequence.get();
+	}
+	
+	/**
+	 * Adds a reward unless the user has already been rewarded for the same
+	 * attraction, and keeps the cumulative reward points up to date.
+	 *
+	 * @param userReward the reward to add
+	 * @return true if the reward was added
+	 */
+	public synchronized boolean addUserReward(UserReward userReward) {
 		if(userRewards.stream().noneMatch(r -> r.attraction.attractionName.equals(userReward.attraction.attractionName))) {
 			userRewards.add(userReward);
+			cumulativeRewardPoints += userReward.getRewardPoints();
+			return true;
 		}
+		return false;
+	}
+
+	/**
+	 * Adds the points of a reward resolved after it was added, see {@link UserReward#isPending()}.
+	 *
+	 * @param rewardPoints the resolved points
+	 */
+	public synchronized void addResolvedRewardPoints(int rewardPoints) {
+		cumulativeRewardPoints += rewardPoints;
+	}
+
+	public int getCumulativeRewardPoints() {
+		return cumulativeRewardPoints;
 	}
 	
 	public List<UserReward> getUserRewards() {
@@ -87,8 +154,13 @@ public class User {
 		this.userPreferences = userPreferences;
 	}
 
+	/**
+	 * Gets the most recently visited location.
+	 *
+	 * @return the most recent location, or null if the user has not been located yet
+	 */
 	public VisitedLocation getLastVisitedLocation() {
-		return visitedLocations.get(visitedLocations.size() - 1);
+		return visitedLocations.getLatest();
 	}
 	
 	public void setTripDeals(List<Provider> tripDeals) {
@@ -99,4 +171,44 @@ public class User {
 		return tripDeals;
 	}
 
+	/**
+	 * Stores priced trip deals along with what they were priced from.
+	 *
+	 * @param tripDeals   the priced trip deals
+	 * @param fingerprint a summary of the reward points and preferences used to price them
+	 * @param timestamp   the time in milliseconds at which they were priced
+	 */
+	public void setTripDeals(List<Provider> tripDeals, int fingerprint, long timestamp) {
+		this.tripDealsFingerprint = fingerprint;
+		this.tripDealsTimestamp = timestamp;
+		this.tripDeals = tripDeals;
+	}
+
+	public int getTripDealsFingerprint() {
+		return tripDealsFingerprint;
+	}
+
+	public long getTripDealsTimestamp() {
+		return tripDealsTimestamp;
+	}
+
+	public TrackingPriority getTrackingPriority() {
+		return trackingPriority;
+	}
+
+	public void setTrackingPriority(TrackingPriority trackingPriority) {
+		this.trackingPriority = trackingPriority;
+	}
+
+	/**
+	 * Records that the user has just been active through the API.
+	 */
+	public void markActive() {
+		lastActivityTime = System.currentTimeMillis();
+	}
+
+	public long getLastActivityTime() {
+		return lastActivityTime;
+	}
+
 }
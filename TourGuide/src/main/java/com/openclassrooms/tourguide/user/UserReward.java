@@ -1,5 +1,8 @@
 package com.openclassrooms.tourguide.user;
 
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
 import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 
@@ -7,7 +10,9 @@ public class UserReward {
 
 	public final VisitedLocation visitedLocation;
 	public final Attraction attraction;
-	private int rewardPoints;
+	private volatile int rewardPoints;
+	// points not asked to RewardCentral yet, see resolveRewardPoints
+	private volatile boolean pending;
 	public UserReward(VisitedLocation visitedLocation, Attraction attraction, int rewardPoints) {
 		this.visitedLocation = visitedLocation;
 		this.attraction = attraction;
@@ -19,6 +24,19 @@ public class UserReward {
 		this.attraction = attraction;
 	}
 
+	/**
+	 * Creates a reward whose points are resolved later, on first read or in the background.
+	 *
+	 * @param visitedLocation the location near the attraction
+	 * @param attraction the rewarded attraction
+	 * @return the reward, with its points pending
+	 */
+	public static UserReward pending(VisitedLocation visitedLocation, Attraction attraction) {
+		UserReward userReward = new UserReward(visitedLocation, attraction);
+		userReward.pending = true;
+		return userReward;
+	}
+
 	public void setRewardPoints(int rewardPoints) {
 		this.rewardPoints = rewardPoints;
 	}
@@ -26,5 +44,31 @@ public class UserReward {
 	public int getRewardPoints() {
 		return rewardPoints;
 	}
+
+	public boolean isPending() {
+		return pending;
+	}
+
+	/**
+	 * Resolves the points of a pending reward, once even if several threads try at
+	 * the same time. The resolved points are handed to onResolved before the
+	 * reward stops being pending, so that a reward seen as resolved is already
+	 * counted, and a thread calling this while another resolves waits for it.
+	 * The reward stays pending if the points cannot be obtained.
+	 *
+	 * @param rewardPoints supplies the points, e.g. by calling RewardCentral
+	 * @param onResolved receives the points, e.g. to add them to the user total
+	 * @return true if this call resolved the points
+	 */
+	public synchronized boolean resolveRewardPoints(IntSupplier rewardPoints, IntConsumer onResolved) {
+		if (!pending) {
+			return false;
+		}
+		int points = rewardPoints.getAsInt();
+		this.rewardPoints = points;
+		onResolved.accept(points);
+		pending = false;
+		return true;
+	}
 	
 }
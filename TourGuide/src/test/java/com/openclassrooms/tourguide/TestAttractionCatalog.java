@@ -0,0 +1,56 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import com.openclassrooms.tourguide.service.AttractionCatalog;
+
+public class TestAttractionCatalog {
+
+	@Test
+	public void unchangedAttractionsKeepTheSameVersion() {
+		AttractionCatalog catalog = new AttractionCatalog(new GpsUtil());
+		AttractionCatalog.Snapshot first = catalog.current();
+
+		AttractionCatalog.Snapshot refreshed = catalog.refresh();
+
+		assertSame(first, refreshed);
+		assertSame(first, catalog.current());
+		assertEquals(0, refreshed.version());
+	}
+
+	@Test
+	public void changedAttractionsSwapInNewVersion() {
+		ChangingGpsUtil gpsUtil = new ChangingGpsUtil();
+		AttractionCatalog catalog = new AttractionCatalog(gpsUtil);
+		AtomicInteger notifications = new AtomicInteger();
+		catalog.addListener(snapshot -> notifications.incrementAndGet());
+		int size = catalog.current().attractions().size();
+
+		gpsUtil.added.add(new Attraction("New Park", "Paris", "France", 48.85, 2.35));
+		AttractionCatalog.Snapshot refreshed = catalog.refresh();
+
+		assertEquals(1, refreshed.version());
+		assertEquals(size + 1, catalog.current().attractions().size());
+		assertEquals(1, notifications.get());
+	}
+
+	private static class ChangingGpsUtil extends GpsUtil {
+		private final List<Attraction> added = new ArrayList<>();
+
+		@Override
+		public List<Attraction> getAttractions() {
+			List<Attraction> attractions = new ArrayList<>(super.getAttractions());
+			attractions.addAll(added);
+			return attractions;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import com.openclassrooms.tourguide.analytics.AttractionPopularity;
+
+public class TestAttractionPopularity {
+
+	@Test
+	public void countsVisitsRewardsAndUniqueVisitorsInWindow() {
+		List<Attraction> attractions = new GpsUtil().getAttractions();
+		AttractionPopularity popularity = new AttractionPopularity();
+		long now = System.currentTimeMillis();
+		long threeHoursAgo = now - TimeUnit.HOURS.toMillis(3);
+		UUID jon = UUID.randomUUID();
+		UUID jane = UUID.randomUUID();
+
+		popularity.recordVisit(attractions.get(0), jon, threeHoursAgo);
+		popularity.recordVisit(attractions.get(0), jon, now);
+		popularity.recordVisit(attractions.get(0), jane, now);
+		popularity.recordReward(attractions.get(0), now);
+		popularity.recordVisit(attractions.get(1), jane, now);
+
+		List<AttractionPopularity.Popularity> lastHour = popularity.getPopularity(Duration.ofHours(1), now);
+		List<AttractionPopularity.Popularity> lastDay = popularity.getPopularity(Duration.ofHours(24), now);
+
+		assertEquals(attractions.get(0).attractionName, lastHour.get(0).attractionName());
+		assertEquals(3, lastHour.get(0).visits());
+		assertEquals(2, lastHour.get(0).windowVisits());
+		assertEquals(1, lastHour.get(0).windowRewards());
+		assertEquals(2, lastHour.get(0).uniqueVisitors());
+		assertEquals(3, lastDay.get(0).windowVisits());
+		assertEquals(1, lastDay.get(1).windowVisits());
+	}
+}
@@ -0,0 +1,43 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.sharding.ConsistentHashRing;
+
+public class TestConsistentHashRing {
+
+	@Test
+	public void usersAreSpreadOverAllMembers() {
+		List<String> members = List.of("http://localhost:8080", "http://localhost:8081", "http://localhost:8082");
+		ConsistentHashRing ring = new ConsistentHashRing(members);
+
+		long[] counts = members.stream()
+				.mapToLong(member -> IntStream.range(0, 3000)
+						.filter(i -> member.equals(ring.ownerOf("internalUser" + i)))
+						.count())
+				.toArray();
+
+		for (long count : counts) {
+			assertTrue(count > 500);
+		}
+		assertEquals(3000, counts[0] + counts[1] + counts[2]);
+	}
+
+	@Test
+	public void joiningMemberOnlyTakesUsersFromOthers() {
+		ConsistentHashRing ring = new ConsistentHashRing(List.of("http://localhost:8080", "http://localhost:8081"));
+		ConsistentHashRing grownRing = new ConsistentHashRing(
+				List.of("http://localhost:8080", "http://localhost:8081", "http://localhost:8082"));
+
+		IntStream.range(0, 3000).mapToObj(i -> "internalUser" + i).forEach(userName -> {
+			String newOwner = grownRing.ownerOf(userName);
+			assertTrue(newOwner.equals(ring.ownerOf(userName)) || newOwner.equals("http://localhost:8082"));
+		});
+	}
+}
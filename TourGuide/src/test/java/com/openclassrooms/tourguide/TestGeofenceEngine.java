@@ -0,0 +1,71 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.geofence.GeofenceEngine;
+import com.openclassrooms.tourguide.geofence.GeofenceEvent;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+public class TestGeofenceEngine {
+
+	private final RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+	private final UUID userId = UUID.randomUUID();
+
+	@Test
+	public void emitsEnterThenExitTransitions() {
+		GeofenceEngine engine = new GeofenceEngine(rewardsService);
+		List<GeofenceEvent> received = new ArrayList<>();
+		engine.addListener(received::add);
+		Attraction attraction = rewardsService.getAttractions().get(0);
+
+		engine.onLocation(visitedAt(attraction.latitude + 0.001, attraction.longitude));
+		engine.onLocation(visitedAt(attraction.latitude + 0.01, attraction.longitude));
+		engine.onLocation(visitedAt(0, 0));
+
+		assertEquals(GeofenceEvent.Type.ENTER, received.get(0).type());
+		assertEquals(attraction.attractionName, received.get(0).attraction().attractionName);
+		assertEquals(GeofenceEvent.Type.EXIT, received.get(received.size() - 1).type());
+		assertEquals(received.size(), engine.getEventCount());
+		assertTrue(engine.getZones(userId).isEmpty());
+	}
+
+	@Test
+	public void zonesMatchAFullScan() {
+		GeofenceEngine engine = new GeofenceEngine(rewardsService);
+		List<Attraction> attractions = rewardsService.getAttractions();
+		Random random = new Random(7);
+
+		for (int i = 0; i < 2000; i++) {
+			Attraction around = attractions.get(random.nextInt(attractions.size()));
+			VisitedLocation visitedLocation = visitedAt(around.latitude + random.nextDouble(-0.3, 0.3),
+					around.longitude + random.nextDouble(-0.3, 0.3));
+			engine.onLocation(visitedLocation);
+
+			Set<String> expected = attractions.stream()
+					.filter(attraction -> rewardsService.getDistance(attraction, visitedLocation.location) <= rewardsService.getProximityBuffer())
+					.map(attraction -> attraction.attractionName)
+					.collect(Collectors.toSet());
+			assertEquals(expected, engine.getZones(userId));
+		}
+	}
+
+	private VisitedLocation visitedAt(double latitude, double longitude) {
+		return new VisitedLocation(userId, new Location(latitude, longitude), new Date());
+	}
+}
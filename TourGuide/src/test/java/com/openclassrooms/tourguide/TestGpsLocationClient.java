@@ -0,0 +1,140 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.service.GpsLocationClient;
+
+public class TestGpsLocationClient {
+
+	@Test
+	public void slowCallFailsAtDeadline() {
+		GpsLocationClient client = new GpsLocationClient(new ScriptedGpsUtil(5000));
+		client.setDeadlineMillis(100);
+
+		CompletionException exception = assertThrows(CompletionException.class, () -> client.getUserLocation(UUID.randomUUID()));
+
+		assertInstanceOf(TimeoutException.class, exception.getCause());
+		assertEquals(1, client.getTimeouts());
+		client.shutdown();
+	}
+
+	@Test
+	public void slowCallIsHedgedAndFirstResponseWins() {
+		ScriptedGpsUtil gpsUtil = new ScriptedGpsUtil(10);
+		GpsLocationClient client = new GpsLocationClient(gpsUtil);
+		client.setDeadlineMillis(3000);
+		client.setHedgingEnabled(true);
+		for (int i = 0; i < 64; i++) {
+			client.getUserLocation(UUID.randomUUID());
+		}
+		assertTrue(client.getHedgeDelayMillis() >= 0);
+
+		// the next call is stuck, its hedge answers right away
+		gpsUtil.slowCalls.set(1);
+		gpsUtil.slowMillis = 2500;
+		UUID userId = UUID.randomUUID();
+		long start = System.currentTimeMillis();
+		VisitedLocation visitedLocation = client.getUserLocation(userId);
+
+		assertEquals(userId, visitedLocation.userId);
+		assertTrue(System.currentTimeMillis() - start < 1000);
+		assertEquals(1, client.getHedgedCalls());
+		client.shutdown();
+	}
+
+	@Test
+	public void failingHedgeDoesNotFailTheCall() {
+		ScriptedGpsUtil gpsUtil = new ScriptedGpsUtil(10);
+		GpsLocationClient client = new GpsLocationClient(gpsUtil);
+		client.setDeadlineMillis(3000);
+		client.setHedgingEnabled(true);
+		for (int i = 0; i < 64; i++) {
+			client.getUserLocation(UUID.randomUUID());
+		}
+
+		// the next call answers late, its hedge fails right away
+		gpsUtil.slowCalls.set(1);
+		gpsUtil.slowMillis = 500;
+		gpsUtil.failingCalls.set(1);
+		UUID userId = UUID.randomUUID();
+		VisitedLocation visitedLocation = client.getUserLocation(userId);
+
+		assertEquals(userId, visitedLocation.userId);
+		assertEquals(1, client.getHedgedCalls());
+		assertEquals(0, gpsUtil.failingCalls.get());
+		client.shutdown();
+	}
+
+	@Test
+	public void callFailsWhenEveryAttemptFails() {
+		ScriptedGpsUtil gpsUtil = new ScriptedGpsUtil(10);
+		GpsLocationClient client = new GpsLocationClient(gpsUtil);
+		gpsUtil.failingCalls.set(1);
+
+		CompletionException exception = assertThrows(CompletionException.class, () -> client.getUserLocation(UUID.randomUUID()));
+
+		assertInstanceOf(IllegalStateException.class, exception.getCause());
+		client.shutdown();
+	}
+
+	@Test
+	public void callsBeyondTheBoundAreRejected() {
+		GpsLocationClient client = new GpsLocationClient(new ScriptedGpsUtil(2000), 2);
+		client.setDeadlineMillis(100);
+		for (int i = 0; i < 2; i++) {
+			assertThrows(CompletionException.class, () -> client.getUserLocation(UUID.randomUUID()));
+		}
+
+		// both threads are still held by the abandoned calls
+		CompletionException exception = assertThrows(CompletionException.class, () -> client.getUserLocation(UUID.randomUUID()));
+
+		assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+		assertEquals(2, client.getTimeouts());
+		assertEquals(1, client.getRejectedCalls());
+		client.shutdown();
+	}
+
+	private static class ScriptedGpsUtil extends GpsUtil {
+		private final AtomicInteger slowCalls = new AtomicInteger();
+		// calls that fail, once the slow calls have been made
+		private final AtomicInteger failingCalls = new AtomicInteger();
+		private final long fastMillis;
+		private volatile long slowMillis;
+
+		ScriptedGpsUtil(long fastMillis) {
+			this.fastMillis = fastMillis;
+			this.slowMillis = fastMillis;
+		}
+
+		@Override
+		public VisitedLocation getUserLocation(UUID userId) {
+			boolean slow = slowCalls.getAndDecrement() > 0;
+			if (!slow && failingCalls.getAndDecrement() > 0) {
+				throw new IllegalStateException("gpsUtil failed");
+			}
+			long millis = slow ? slowMillis : fastMillis;
+			try {
+				TimeUnit.MILLISECONDS.sleep(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new VisitedLocation(userId, new Location(33.8, -117.9), new Date());
+		}
+	}
+}
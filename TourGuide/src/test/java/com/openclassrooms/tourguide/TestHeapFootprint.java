@@ -0,0 +1,155 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import com.openclassrooms.tourguide.user.UserReward;
+import tripPricer.Provider;
+
+public class TestHeapFootprint {
+
+	/*
+	 * Heap footprint regression suite.
+	 *
+	 * Each case builds a population of users with a realistic history, measures
+	 * the heap retained per user and the bytes allocated per tracked user during
+	 * a tracker cycle, tracked in batches like the tracker does, and fails when
+	 * they exceed their budget.
+	 *
+	 * Only the populations up to footprint.maxUsers (10,000 by default) run as part
+	 * of the build. Larger ones need a bigger heap, e.g.:
+	 *
+	 * mvn test -Dtest=TestHeapFootprint -Dfootprint.maxUsers=1000000 -DargLine=-Xmx12g
+	 *
+	 * Budgets can be overridden with footprint.retainedBytesPerUser and
+	 * footprint.allocatedBytesPerTrackedUser.
+	 */
+	private static final int HISTORY_SIZE = 48;
+	private static final int REWARD_COUNT = 3;
+	private static final int TRIP_DEAL_COUNT = 5;
+	private static final int CYCLE_SAMPLE_SIZE = 200;
+
+	private static final long RETAINED_BYTES_PER_USER_BUDGET = Long.getLong("footprint.retainedBytesPerUser", 6 * 1024);
+	private static final long ALLOCATED_BYTES_PER_TRACKED_USER_BUDGET = Long.getLong("footprint.allocatedBytesPerTrackedUser", 32 * 1024);
+
+	@ParameterizedTest
+	@ValueSource(ints = {10000, 100000, 1000000})
+	public void retainedHeapPerUser(Integer userCount) {
+		assumeTrue(userCount <= Integer.getInteger("footprint.maxUsers", 10000));
+		List<Attraction> attractions = new GpsUtil().getAttractions();
+
+		long heapBefore = usedHeapAfterGc();
+		List<User> users = buildPopulation(userCount, attractions);
+		long heapAfter = usedHeapAfterGc();
+
+		long retainedBytesPerUser = (heapAfter - heapBefore) / users.size();
+		System.out.println("retainedHeapPerUser for " + users.size() + " users: " + retainedBytesPerUser
+				+ " bytes per user, budget " + RETAINED_BYTES_PER_USER_BUDGET + ".");
+		assertTrue(retainedBytesPerUser <= RETAINED_BYTES_PER_USER_BUDGET);
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {10000, 100000, 1000000})
+	public void allocationPerTrackerCycle(Integer userCount) {
+		assumeTrue(userCount <= Integer.getInteger("footprint.maxUsers", 10000));
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		List<User> users = buildPopulation(userCount, gpsUtil.getAttractions());
+
+		// a sample of the population goes through a real tracking, in the batches the
+		// tracker would make, and the cycle cost is extrapolated
+		List<User> sample = users.subList(0, Math.min(CYCLE_SAMPLE_SIZE, users.size()));
+		int parallelism = tourGuideService.getTrackingParallelism();
+		int batchSize = Math.max(1, Math.min(tourGuideService.tracker.getBatchSize(), (sample.size() + parallelism - 1) / parallelism));
+		long allocatedBefore = allocatedBytes();
+		List<CompletableFuture<List<VisitedLocation>>> trackerFutures = new ArrayList<>();
+		for (int from = 0; from < sample.size(); from += batchSize) {
+			trackerFutures.add(tourGuideService.trackUserLocationsBatchAsync(sample.subList(from, Math.min(from + batchSize, sample.size()))));
+		}
+		CompletableFuture.allOf(trackerFutures.toArray(new CompletableFuture[0])).join();
+		long allocatedBytesPerTrackedUser = (allocatedBytes() - allocatedBefore) / sample.size();
+
+		System.out.println("allocationPerTrackerCycle for " + users.size() + " users: " + allocatedBytesPerTrackedUser
+				+ " bytes per tracked user, " + allocatedBytesPerTrackedUser * users.size() / (1024 * 1024)
+				+ " MB per cycle, budget " + ALLOCATED_BYTES_PER_TRACKED_USER_BUDGET + " bytes per tracked user.");
+		assertTrue(allocatedBytesPerTrackedUser <= ALLOCATED_BYTES_PER_TRACKED_USER_BUDGET);
+	}
+
+	private List<User> buildPopulation(int userCount, List<Attraction> attractions) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long now = System.currentTimeMillis();
+		List<User> users = new ArrayList<>(userCount);
+		for (int i = 0; i < userCount; i++) {
+			String userName = "footprintUser" + i;
+			User user = new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com");
+			for (int j = 0; j < HISTORY_SIZE; j++) {
+				Location location = new Location(random.nextDouble(-85, 85), random.nextDouble(-180, 180));
+				user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location,
+						new Date(now - TimeUnit.MINUTES.toMillis(30L * (HISTORY_SIZE - j)))));
+			}
+			List<VisitedLocation> history = user.getVisitedLocations();
+			for (int j = 0; j < REWARD_COUNT; j++) {
+				user.addUserReward(new UserReward(history.get(j), attractions.get(j), random.nextInt(1, 1000)));
+			}
+			List<Provider> tripDeals = new ArrayList<>(TRIP_DEAL_COUNT);
+			for (int j = 0; j < TRIP_DEAL_COUNT; j++) {
+				tripDeals.add(new Provider(UUID.randomUUID(), "Provider" + j, random.nextDouble(100, 1000)));
+			}
+			user.setTripDeals(tripDeals);
+			user.setUserPreferences(new UserPreferences());
+			users.add(user);
+		}
+		return users;
+	}
+
+	private long usedHeapAfterGc() {
+		MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			try {
+				TimeUnit.MILLISECONDS.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return memoryMXBean.getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Bytes allocated so far by all live threads of the JVM.
+	 */
+	private long allocatedBytes() {
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long total = 0;
+		for (long allocated : threadMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+			total += Math.max(allocated, 0);
+		}
+		return total;
+	}
+}
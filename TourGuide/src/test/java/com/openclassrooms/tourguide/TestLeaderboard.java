@@ -0,0 +1,91 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.analytics.Leaderboard;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+public class TestLeaderboard {
+
+	private final List<Attraction> attractions = new GpsUtil().getAttractions();
+
+	@Test
+	public void getTopAndRank() {
+		Leaderboard leaderboard = new Leaderboard();
+		User jon = rewardedUser("jon", leaderboard, 100, 50);
+		User jane = rewardedUser("jane", leaderboard, 300);
+		User jack = rewardedUser("jack", leaderboard, 150);
+		User jill = rewardedUser("jill", leaderboard, 120);
+
+		List<Leaderboard.Entry> top = leaderboard.getTop(4);
+
+		assertEquals("jane", top.get(0).userName());
+		assertEquals(Set.of("jon", "jack"), Set.of(top.get(1).userName(), top.get(2).userName()));
+		assertEquals("jill", top.get(3).userName());
+		assertEquals(1, leaderboard.getRank(jane.getUserId()));
+		assertEquals(2, leaderboard.getRank(jon.getUserId()));
+		assertEquals(2, leaderboard.getRank(jack.getUserId()));
+		assertEquals(4, leaderboard.getRank(jill.getUserId()));
+		assertEquals(-1, leaderboard.getRank(UUID.randomUUID()));
+	}
+
+	@Test
+	public void rankFollowsNewRewardsBeyondInitialCapacity() {
+		Leaderboard leaderboard = new Leaderboard();
+		User jon = rewardedUser("jon", leaderboard, 10);
+		User jane = rewardedUser("jane", leaderboard, 20);
+
+		reward(jon, leaderboard, 100000);
+
+		assertEquals(1, leaderboard.getRank(jon.getUserId()));
+		assertEquals(2, leaderboard.getRank(jane.getUserId()));
+		assertEquals(100010, leaderboard.getTop(1).get(0).points());
+	}
+
+	@Test
+	public void negativeLimitGivesNoUser() {
+		Leaderboard leaderboard = new Leaderboard();
+		rewardedUser("jon", leaderboard, 10);
+
+		assertEquals(List.of(), leaderboard.getTop(-1));
+	}
+
+	@Test
+	public void rankUsersBeyondMaximumCapacity() {
+		Leaderboard leaderboard = new Leaderboard();
+		User jon = rewardedUser("jon", leaderboard, Integer.MAX_VALUE / 2);
+		User jane = rewardedUser("jane", leaderboard, Integer.MAX_VALUE / 2, 10);
+		User jack = rewardedUser("jack", leaderboard, 1 << 30);
+		User jill = rewardedUser("jill", leaderboard, 10);
+
+		assertEquals(1, leaderboard.getRank(jane.getUserId()));
+		assertEquals(2, leaderboard.getRank(jack.getUserId()));
+		assertEquals(3, leaderboard.getRank(jon.getUserId()));
+		assertEquals(4, leaderboard.getRank(jill.getUserId()));
+	}
+
+	private User rewardedUser(String userName, Leaderboard leaderboard, int... rewardPoints) {
+		User user = new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com");
+		for (int points : rewardPoints) {
+			reward(user, leaderboard, points);
+		}
+		return user;
+	}
+
+	private void reward(User user, Leaderboard leaderboard, int points) {
+		Attraction attraction = attractions.get(user.getUserRewards().size());
+		user.addUserReward(new UserReward(new VisitedLocation(user.getUserId(), attraction, new Date()), attraction, points));
+		leaderboard.update(user);
+	}
+}
@@ -0,0 +1,81 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.user.LocationHistory;
+
+public class TestLocationHistory {
+
+	private final UUID userId = UUID.randomUUID();
+
+	@Test
+	public void keepsLocationsOrderedByTime() {
+		LocationHistory history = new LocationHistory();
+		history.add(visitedAt(3000));
+		history.add(visitedAt(1000));
+		history.add(visitedAt(2000));
+
+		assertEquals(List.of(1000L, 2000L, 3000L), times(history.toList()));
+		assertEquals(3000, history.getLatest().timeVisited.getTime());
+	}
+
+	@Test
+	public void compactDropsAndDownsamplesOldLocations() {
+		LocationHistory history = new LocationHistory();
+		for (long time = 0; time < 100; time += 5) {
+			history.add(visitedAt(time));
+		}
+
+		int removed = history.compact(20, 60, 20);
+
+		// dropped before 20, one per 20ms bucket until 60, all after
+		assertEquals(List.of(20L, 40L, 60L, 65L, 70L, 75L, 80L, 85L, 90L, 95L), times(history.toList()));
+		assertEquals(10, removed);
+		assertEquals(0, history.compact(20, 60, 20));
+		assertEquals(9, history.compact(1000, 1000, 20));
+		assertEquals(List.of(95L), times(history.toList()));
+	}
+
+	@Test
+	public void getBetweenReturnsPagesOfRange() {
+		LocationHistory history = new LocationHistory();
+		for (long time = 1000; time <= 10000; time += 1000) {
+			history.add(visitedAt(time));
+		}
+
+		assertEquals(List.of(3000L, 4000L, 5000L), times(history.getBetween(new Date(2500), new Date(7000), 0, 3)));
+		assertEquals(List.of(6000L, 7000L), times(history.getBetween(new Date(2500), new Date(7000), 3, 3)));
+		assertEquals(List.of(), times(history.getBetween(new Date(2500), new Date(7000), 6, 3)));
+		assertEquals(List.of(), times(history.getBetween(new Date(2500), new Date(7000), Integer.MAX_VALUE, 3)));
+		assertEquals(List.of(6000L, 7000L), times(history.getBetween(new Date(2500), new Date(7000), 3, Integer.MAX_VALUE)));
+	}
+
+	@Test
+	public void getAtReturnsLocationInPlaceAtThatTime() {
+		LocationHistory history = new LocationHistory();
+		history.add(visitedAt(1000));
+		history.add(visitedAt(2000));
+
+		assertNull(history.getAt(new Date(500)));
+		assertEquals(1000, history.getAt(new Date(1999)).timeVisited.getTime());
+		assertEquals(2000, history.getAt(new Date(2000)).timeVisited.getTime());
+		assertEquals(2000, history.getAt(new Date(99999)).timeVisited.getTime());
+	}
+
+	private VisitedLocation visitedAt(long time) {
+		return new VisitedLocation(userId, new Location(33.8, -117.9), new Date(time));
+	}
+
+	private List<Long> times(List<VisitedLocation> visitedLocations) {
+		return visitedLocations.stream().map(visitedLocation -> visitedLocation.timeVisited.getTime()).toList();
+	}
+}
@@ -0,0 +1,98 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.dto.NearbyAttractionDto;
+import com.openclassrooms.tourguide.mapper.MapperNearbyAttractionDto;
+import com.openclassrooms.tourguide.model.AttractionDistanceFromUser;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestMapperNearbyAttractionDto {
+
+	@Test
+	public void rewardPointsAreResolvedConcurrentlyUnderADeadline() {
+		Attraction slowAttraction = new Attraction("Slow", "City", "ST", 33.0, -117.0);
+		// each call takes 200ms, except for the slow attraction which misses the deadline
+		RewardCentral rewardCentral = new RewardCentral() {
+			@Override
+			public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+				try {
+					Thread.sleep(attractionId.equals(slowAttraction.attractionId) ? 5000 : 200);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return 42;
+			}
+		};
+		MapperNearbyAttractionDto mapper = new MapperNearbyAttractionDto(rewardCentral, 600);
+
+		List<AttractionDistanceFromUser> attractionDistances = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			attractionDistances.add(new AttractionDistanceFromUser(new Attraction("Attraction" + i, "City", "ST", 33.0 + i, -117.0), i));
+		}
+		attractionDistances.add(new AttractionDistanceFromUser(slowAttraction, 5));
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(33.0, -117.0), new Date());
+
+		long start = System.currentTimeMillis();
+		List<NearbyAttractionDto> nearbyAttractions = mapper.mapAttractionsToNearAttractionsDto(attractionDistances, visitedLocation, user);
+		long elapsed = System.currentTimeMillis() - start;
+		mapper.shutdown();
+
+		assertEquals(5, nearbyAttractions.size());
+		for (int i = 0; i < 4; i++) {
+			assertEquals("Attraction" + i, nearbyAttractions.get(i).getName());
+			assertEquals(42, nearbyAttractions.get(i).getRewardPoints());
+		}
+		assertNull(nearbyAttractions.get(4).getRewardPoints());
+		// sequential calls would take 5 times 200ms before even reaching the slow one
+		assertTrue(elapsed < 1000, "took " + elapsed + " ms");
+	}
+
+	@Test
+	public void rewardPointsAreUnknownWhenNoThreadIsLeft() {
+		RewardCentral rewardCentral = new RewardCentral() {
+			@Override
+			public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return 42;
+			}
+		};
+		MapperNearbyAttractionDto mapper = new MapperNearbyAttractionDto(rewardCentral, 3000, 2);
+
+		List<AttractionDistanceFromUser> attractionDistances = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			attractionDistances.add(new AttractionDistanceFromUser(new Attraction("Attraction" + i, "City", "ST", 33.0 + i, -117.0), i));
+		}
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(33.0, -117.0), new Date());
+
+		List<NearbyAttractionDto> nearbyAttractions = mapper.mapAttractionsToNearAttractionsDto(attractionDistances, visitedLocation, user);
+		mapper.shutdown();
+
+		// the first two calls get the threads, the others are not made
+		assertEquals(5, nearbyAttractions.size());
+		assertEquals(42, nearbyAttractions.get(0).getRewardPoints());
+		assertEquals(42, nearbyAttractions.get(1).getRewardPoints());
+		for (int i = 2; i < 5; i++) {
+			assertNull(nearbyAttractions.get(i).getRewardPoints());
+		}
+	}
+}
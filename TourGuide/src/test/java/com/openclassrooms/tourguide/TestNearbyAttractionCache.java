@@ -0,0 +1,81 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.service.AttractionCatalog;
+import com.openclassrooms.tourguide.service.NearbyAttractionCache;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+public class TestNearbyAttractionCache {
+
+	private final RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+	private final AttractionCatalog.Snapshot catalog = rewardsService.getAttractionCatalog().current();
+	private final List<Attraction> attractions = catalog.attractions();
+
+	@Test
+	public void candidatesContainNearestAttractions() {
+		NearbyAttractionCache cache = new NearbyAttractionCache(rewardsService::getDistance, 5);
+		Random random = new Random(42);
+
+		for (int i = 0; i < 2000; i++) {
+			// users concentrated around a few cities, so that cells are shared
+			Attraction city = attractions.get(random.nextInt(3));
+			Location location = new Location(city.latitude + random.nextDouble(-0.3, 0.3),
+					city.longitude + random.nextDouble(-0.3, 0.3));
+
+			assertEquals(nearest(location, attractions), nearest(location, cache.getCandidates(location, catalog)));
+		}
+		assertEquals(2000, cache.getHitCount() + cache.getMissCount());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedCells() {
+		NearbyAttractionCache cache = new NearbyAttractionCache(rewardsService::getDistance, 5);
+		cache.setMaxCells(2);
+		Location first = new Location(33.81, -117.91);
+		Location second = new Location(34.81, -118.91);
+		Location third = new Location(35.81, -119.91);
+
+		cache.getCandidates(first, catalog);
+		cache.getCandidates(second, catalog);
+		cache.getCandidates(first, catalog);
+		cache.getCandidates(third, catalog);
+		cache.getCandidates(first, catalog);
+		cache.getCandidates(second, catalog);
+
+		assertEquals(2, cache.size());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(4, cache.getMissCount());
+	}
+
+	@Test
+	public void catalogChangeDropsCells() {
+		NearbyAttractionCache cache = new NearbyAttractionCache(rewardsService::getDistance, 5);
+		Location location = new Location(33.81, -117.91);
+		cache.getCandidates(location, catalog);
+
+		cache.getCandidates(location, new AttractionCatalog.Snapshot(catalog.version() + 1,
+				attractions.subList(1, attractions.size()), 0, System.currentTimeMillis()));
+
+		assertEquals(0, cache.getHitCount());
+		assertEquals(1, cache.size());
+	}
+
+	private List<String> nearest(Location location, List<Attraction> candidates) {
+		return candidates.stream()
+				.sorted(Comparator.comparingDouble(attraction -> rewardsService.getDistance(attraction, location)))
+				.limit(5)
+				.map(attraction -> attraction.attractionName)
+				.toList();
+	}
+}
@@ -1,21 +1,35 @@
 package com.openclassrooms.tourguide;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.time.StopWatch;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
-import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.params.ParameterizedTest;
-import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
 import rewardCentral.RewardCentral;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
 import com.openclassrooms.tourguide.service.RewardsService;
@@ -26,18 +40,18 @@ public class TestPerformance {
 
 	/*
 	 * A note on performance improvements:
-	 * 
+	 *
 	 * The number of users generated for the high volume tests can be easily
 	 * adjusted via this method:
-	 * 
+	 *
 	 * InternalTestHelper.setInternalUserNumber(100000);
-	 * 
-	 * 
+	 *
+	 *
 	 * These tests can be modified to suit new solutions, just as long as the
 	 * performance metrics at the end of the tests remains consistent.
-	 * 
+	 *
 	 * These are performance metrics that we are trying to hit:
-	 * 
+	 *
 	 * highVolumeTrackLocation: 100,000 users within 15 minutes:
 	 * assertTrue(TimeUnit.MINUTES.toSeconds(15) >=
 	 * TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
@@ -47,76 +61,237 @@ public class TestPerformance {
 	 * TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
 	 */
 
-	@Disabled
+	/*
+	 * Macro-benchmark runner.
+	 *
+	 * Each scenario runs for every user count of benchmark.userCounts and every
+	 * thread count of benchmark.threads, against a TourGuideService whose
+	 * background tracker is never started. Throughput and the percentiles of the
+	 * latency of each user, from the submission of its operation to its completion,
+	 * are written to target/benchmarks/performance.json. The users tracked by the
+	 * batched path share the latency of their batch. A case fails when its
+	 * throughput is more than benchmark.regressionThreshold (20% by default) below
+	 * the stored baseline for the same scenario, user count and thread count. A
+	 * case without baseline fails as well, so that a matrix reaching 100 000 users
+	 * is never measured without being compared.
+	 *
+	 * The benchmarks only run when asked for, e.g.:
+	 *
+	 * mvn test -Dtest=TestPerformance -Dbenchmark.enabled=true -Dbenchmark.userCounts=1000,100000 -Dbenchmark.threads=16,64
+	 *
+	 * The default thread counts, 4 and 16, are the ones of the committed baseline,
+	 * which only covers 100 and 1000 users. The baseline depends on the machine
+	 * that recorded it, whose JVM, OS and processor count are stored along with
+	 * it, and every case fails on another machine: regenerate it on the machine
+	 * running the benchmarks, for every case of the matrix, by adding
+	 * -Dbenchmark.updateBaseline=true to store the results as the new baseline.
+	 */
+	private static final String BASELINE_FILE = System.getProperty("benchmark.baseline", "src/test/resources/benchmark-baseline.json");
+	private static final String RESULTS_FILE = "target/benchmarks/performance.json";
+	private static final double REGRESSION_THRESHOLD = Double.parseDouble(System.getProperty("benchmark.regressionThreshold", "0.2"));
+	private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+	private static final List<Result> results = new CopyOnWriteArrayList<>();
+
 	@ParameterizedTest
-	@ValueSource(ints = {100, 1000, 5000, 10000, 50000, 100000})
-	public void highVolumeTrackLocation(Integer userCount) {
+	@MethodSource("matrix")
+	public void highVolumeTrackLocation(Integer userCount, Integer threads) {
+		assumeTrue(Boolean.getBoolean("benchmark.enabled"));
 		GpsUtil gpsUtil = new GpsUtil();
-		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), threads);
 		// Users should be incremented up to 100,000, and test finishes within 15
 		// minutes
 		InternalTestHelper.setInternalUserNumber(userCount);
-		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, threads, false);
 
-		List<User> allUsers = new ArrayList<>();
-		allUsers = tourGuideService.getAllUsers();
+		List<User> allUsers = tourGuideService.getAllUsers();
+		Result result = run("highVolumeTrackLocation", threads, allUsers, 1,
+				batch -> tourGuideService.trackUserLocationAsync(batch.get(0)));
 
-		StopWatch stopWatch = new StopWatch();
-		stopWatch.start();
+		tourGuideService.tracker.stopTracking();
 
-		List<CompletableFuture<VisitedLocation>> trackerFutures = new ArrayList<>();
-		for (User user : allUsers) {
-			CompletableFuture<VisitedLocation> trackerFuture = tourGuideService.trackUserLocationAsync(user);
-			trackerFutures.add(trackerFuture);
-		}
-		CompletableFuture<Void> allDone = CompletableFuture.allOf(trackerFutures.toArray(new CompletableFuture[0]));
-		allDone.thenRun(() -> System.out.println("All done"));
-		allDone.join();
+		assertTrue(TimeUnit.MINUTES.toMillis(15) >= result.elapsedMillis());
+		assertNoRegression(result);
+	}
+
+	@ParameterizedTest
+	@MethodSource("matrix")
+	public void highVolumeTrackLocationBatch(Integer userCount, Integer threads) {
+		assumeTrue(Boolean.getBoolean("benchmark.enabled"));
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), threads);
+		InternalTestHelper.setInternalUserNumber(userCount);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, threads, false);
+
+		// the batches the tracker would make, so that every thread gets some
+		List<User> allUsers = tourGuideService.getAllUsers();
+		int batchSize = Math.max(1, Math.min(tourGuideService.tracker.getBatchSize(), (allUsers.size() + threads - 1) / threads));
+		Result result = run("highVolumeTrackLocationBatch", threads, allUsers, batchSize,
+				tourGuideService::trackUserLocationsBatchAsync);
 
-		stopWatch.stop();
 		tourGuideService.tracker.stopTracking();
 
-		System.out.println("highVolumeTrackLocation for " + allUsers.size() + " users: Time Elapsed: "
-				+ TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
-		assertTrue(TimeUnit.MINUTES.toSeconds(15) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
+		assertTrue(TimeUnit.MINUTES.toMillis(15) >= result.elapsedMillis());
+		assertNoRegression(result);
 	}
 
-	@Disabled
 	@ParameterizedTest
-	@ValueSource(ints = {100, 1000, 5000, 10000, 50000, 100000})
-	public void highVolumeGetRewards(Integer userCount) {
+	@MethodSource("matrix")
+	public void highVolumeGetRewards(Integer userCount, Integer threads) {
+		assumeTrue(Boolean.getBoolean("benchmark.enabled"));
 		GpsUtil gpsUtil = new GpsUtil();
-		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), threads);
 
 		// Users should be incremented up to 100,000, and test finishes within 20
 		// minutes
 		InternalTestHelper.setInternalUserNumber(userCount);
-		StopWatch stopWatch = new StopWatch();
-		stopWatch.start();
-		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, threads, false);
 
 		Attraction attraction = gpsUtil.getAttractions().get(0);
-		List<User> allUsers = new ArrayList<>();
-		allUsers = tourGuideService.getAllUsers();
+		List<User> allUsers = tourGuideService.getAllUsers();
 		allUsers.forEach(u -> u.addToVisitedLocations(new VisitedLocation(u.getUserId(), attraction, new Date())));
 
-		List<CompletableFuture<Void>> rewardsFutures = new ArrayList<>();
-		 allUsers.forEach(user -> {
-			 CompletableFuture<Void> rewardsFuture = rewardsService.calculateRewardsAsync(user);
-			 rewardsFutures.add(rewardsFuture);
-		 });
-		// Wait for all tracking to complete
-		CompletableFuture.allOf(rewardsFutures.toArray(new CompletableFuture[0])).join();
+		Result result = run("highVolumeGetRewards", threads, allUsers, 1,
+				batch -> rewardsService.calculateRewardsAsync(batch.get(0)));
 
 		for (User user : allUsers) {
 			assertTrue(user.getUserRewards().size() > 0);
 		}
-		stopWatch.stop();
 		tourGuideService.tracker.stopTracking();
 
-		System.out.println("highVolumeGetRewards for " + allUsers.size() + " users: Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime())
-				+ " seconds.");
-		assertTrue(TimeUnit.MINUTES.toSeconds(20) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
+		assertTrue(TimeUnit.MINUTES.toMillis(20) >= result.elapsedMillis());
+		assertNoRegression(result);
+	}
+
+	static Stream<Arguments> matrix() {
+		List<Integer> userCounts = integers("benchmark.userCounts", "100,1000,5000,10000,50000,100000");
+		List<Integer> threads = integers("benchmark.threads", "4,16");
+		return userCounts.stream().flatMap(userCount -> threads.stream().map(thread -> Arguments.of(userCount, thread)));
 	}
 
+	@AfterAll
+	public static void writeResults() throws IOException {
+		if (results.isEmpty()) {
+			return;
+		}
+		File resultsFile = new File(RESULTS_FILE);
+		resultsFile.getAbsoluteFile().getParentFile().mkdirs();
+		objectMapper.writeValue(resultsFile, results);
+		if (Boolean.getBoolean("benchmark.updateBaseline")) {
+			List<Result> baseline = new ArrayList<>();
+			// the cases of another machine cannot be compared with the new ones
+			Baseline previous = readBaseline();
+			if (previous != null && previous.environment().equals(Environment.current())) {
+				baseline.addAll(previous.results());
+			}
+			baseline.removeIf(result -> results.stream().anyMatch(result::sameCase));
+			baseline.addAll(results);
+			File baselineFile = new File(BASELINE_FILE);
+			baselineFile.getAbsoluteFile().getParentFile().mkdirs();
+			objectMapper.writeValue(baselineFile, new Baseline(Environment.current(), baseline));
+		}
+	}
+
+	/**
+	 * Runs an operation on the users, a batch at a time, and measures the latency
+	 * of each user from the submission of its batch to the completion of it.
+	 */
+	private Result run(String scenario, int threads, List<User> users, int batchSize,
+			Function<List<User>, CompletableFuture<?>> operation) {
+		long[] latencies = new long[users.size()];
+		StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+
+		List<CompletableFuture<?>> futures = new ArrayList<>(users.size() / batchSize + 1);
+		for (int from = 0; from < users.size(); from += batchSize) {
+			int first = from;
+			int last = Math.min(from + batchSize, users.size());
+			long submitted = System.nanoTime();
+			futures.add(operation.apply(users.subList(first, last))
+					.thenRun(() -> Arrays.fill(latencies, first, last, System.nanoTime() - submitted)));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+		stopWatch.stop();
+
+		Arrays.sort(latencies);
+		long elapsedMillis = stopWatch.getTime();
+		Result result = new Result(scenario, users.size(), threads,
+				users.size() * 1000.0 / Math.max(elapsedMillis, 1), elapsedMillis,
+				percentileMillis(latencies, 0.5), percentileMillis(latencies, 0.95), percentileMillis(latencies, 0.99));
+		results.add(result);
+		System.out.println(scenario + " for " + users.size() + " users on " + threads + " threads: Time Elapsed: "
+				+ TimeUnit.MILLISECONDS.toSeconds(elapsedMillis) + " seconds, " + Math.round(result.throughputPerSecond())
+				+ " users/s, latency p50 " + result.p50Millis() + " ms, p99 " + result.p99Millis() + " ms.");
+		return result;
+	}
+
+	private void assertNoRegression(Result result) {
+		if (Boolean.getBoolean("benchmark.updateBaseline")) {
+			return;
+		}
+		String howToRecord = ", record one on this machine with -Dbenchmark.updateBaseline=true";
+		Baseline baseline = readBaseline();
+		assertNotNull(baseline, "No benchmark baseline in " + BASELINE_FILE + howToRecord);
+		assertEquals(baseline.environment(), Environment.current(),
+				"The benchmark baseline comes from another machine" + howToRecord);
+		Optional<Result> expected = baseline.results().stream().filter(result::sameCase).findFirst();
+		assertTrue(expected.isPresent(), "No baseline for " + result.scenario() + " with " + result.users()
+				+ " users on " + result.threads() + " threads" + howToRecord);
+		assertTrue(result.throughputPerSecond() >= expected.get().throughputPerSecond() * (1 - REGRESSION_THRESHOLD),
+				result.scenario() + " throughput regressed: " + result.throughputPerSecond()
+						+ " users/s against a baseline of " + expected.get().throughputPerSecond() + " users/s");
+	}
+
+	private static Baseline readBaseline() {
+		File baselineFile = new File(BASELINE_FILE);
+		if (!baselineFile.exists()) {
+			return null;
+		}
+		try {
+			return objectMapper.readValue(baselineFile, Baseline.class);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot read benchmark baseline " + baselineFile, e);
+		}
+	}
+
+	private static long percentileMillis(long[] sortedNanos, double percentile) {
+		int index = (int) Math.min(sortedNanos.length - 1, Math.max(0, Math.ceil(percentile * sortedNanos.length) - 1));
+		return TimeUnit.NANOSECONDS.toMillis(sortedNanos[index]);
+	}
+
+	private static List<Integer> integers(String property, String defaultValue) {
+		return Arrays.stream(System.getProperty(property, defaultValue).split(","))
+				.map(String::trim)
+				.map(Integer::valueOf)
+				.toList();
+	}
+
+	/**
+	 * Outcome of a benchmark case, the percentiles being the latencies of the
+	 * users from the submission of their operation to its completion.
+	 */
+	public record Result(String scenario, int users, int threads, double throughputPerSecond, long elapsedMillis,
+						 long p50Millis, long p95Millis, long p99Millis) {
+
+		boolean sameCase(Result other) {
+			return scenario.equals(other.scenario) && users == other.users && threads == other.threads;
+		}
+	}
+
+	/**
+	 * Results stored as a baseline, along with the machine they were measured on.
+	 */
+	public record Baseline(Environment environment, List<Result> results) {
+	}
+
+	/**
+	 * What the absolute throughput of a benchmark depends on, besides the code.
+	 */
+	public record Environment(String jvm, String javaVersion, String os, int processors) {
+
+		static Environment current() {
+			return new Environment(System.getProperty("java.vm.name"), System.getProperty("java.version"),
+					System.getProperty("os.name") + " " + System.getProperty("os.arch"),
+					Runtime.getRuntime().availableProcessors());
+		}
+	}
 }
@@ -0,0 +1,56 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.tracing.RequestTrace;
+
+public class TestRequestTrace {
+
+	@Test
+	public void spansOfExecutorTasksBelongToTheRequest() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		RequestTrace trace = new RequestTrace("request-1");
+		RequestTrace.setCurrent(trace);
+		try {
+			try (RequestTrace.Span span = RequestTrace.span("getUserLocation")) {
+				// nothing to time
+			}
+			CompletableFuture<?>[] calls = new CompletableFuture<?>[3];
+			for (int i = 0; i < calls.length; i++) {
+				calls[i] = CompletableFuture.runAsync(() -> {
+					try (RequestTrace.Span span = RequestTrace.span("rewardCentral")) {
+						assertEquals("request-1", RequestTrace.current().getRequestId());
+					}
+				}, RequestTrace.propagating(executor));
+			}
+			CompletableFuture.allOf(calls).join();
+		} finally {
+			RequestTrace.setCurrent(null);
+		}
+		CompletableFuture.runAsync(() -> assertNull(RequestTrace.current()), executor).join();
+		executor.shutdown();
+
+		Map<String, long[]> timings = trace.getTimings();
+		assertEquals(1, timings.get("getUserLocation")[1]);
+		assertEquals(3, timings.get("rewardCentral")[1]);
+		String serverTiming = trace.toServerTiming();
+		assertTrue(serverTiming.matches("getUserLocation;dur=\\d+\\.\\d\\d, rewardCentral;dur=\\d+\\.\\d\\d;desc=\"3 calls\", total;dur=\\d+\\.\\d\\d"),
+				serverTiming);
+	}
+
+	@Test
+	public void spansOutsideOfARequestAreIgnored() {
+		try (RequestTrace.Span span = RequestTrace.span("getUserLocation")) {
+			assertNull(RequestTrace.current());
+		}
+	}
+}
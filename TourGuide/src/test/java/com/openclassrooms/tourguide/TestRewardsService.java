@@ -7,15 +7,18 @@ import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import com.openclassrooms.tourguide.model.AttractionDistanceFromUser;
 import org.junit.jupiter.api.Test;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsReevaluationJob;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
@@ -81,4 +84,49 @@ public class TestRewardsService {
 		assertEquals(5, attractionDistanceFromUser.size());
 	}
 
+	@Test
+	public void reevaluationAppliesNewProximityBufferToHistory() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		rewardsService.setProximityBuffer(0);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction attraction = gpsUtil.getAttractions().get(0);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
+				new Location(attraction.latitude + 0.001, attraction.longitude), new Date()));
+
+		RewardsReevaluationJob job = rewardsService.startReevaluation(List.of(user), 1);
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+		while (job.getState() == RewardsReevaluationJob.State.RUNNING && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(50);
+		}
+
+		assertEquals(RewardsReevaluationJob.State.COMPLETED, job.getState());
+		assertEquals(1, job.getProcessedUsers());
+		assertEquals(1, user.getUserRewards().size());
+		assertEquals(attraction.attractionName, user.getUserRewards().get(0).attraction.attractionName);
+	}
+
+	@Test
+	public void lazyRewardPointsAreResolvedOnRead() throws ExecutionException, InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		rewardsService.setLazyRewardPoints(true);
+
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, 1, false);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		List<Attraction> attractions = rewardsService.getAttractions();
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attractions.get(0), new Date()));
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attractions.get(1), new Date()));
+		rewardsService.calculateRewardsAsync(user).get();
+		List<UserReward> userRewards = tourGuideService.getUserRewards(user);
+
+		assertEquals(2, userRewards.size());
+		assertTrue(userRewards.stream().noneMatch(UserReward::isPending));
+		assertEquals(userRewards.stream().mapToInt(UserReward::getRewardPoints).sum(), user.getCumulativeRewardPoints());
+		assertTrue(user.getCumulativeRewardPoints() > 0);
+		assertEquals(user.getCumulativeRewardPoints(), rewardsService.getLeaderboard().getTop(1).get(0).points());
+	}
 }
@@ -0,0 +1,119 @@
+package com.openclassrooms.tourguide;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import gpsUtil.GpsUtil;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.sharding.ShardRoutingInterceptor;
+import com.openclassrooms.tourguide.sharding.ShardingService;
+
+public class TestShardRouting {
+	private static final String INSTANCE_A = "http://a:8080";
+	private static final String INSTANCE_B = "http://b:8080";
+	private static final String INSTANCE_C = "http://c:8080";
+
+	private TourGuideService tourGuideService;
+	// A knows A and B, B already knows that C joined
+	private ShardingService shardingA;
+	private ShardingService shardingB;
+	private MockMvc instanceA;
+	private MockMvc instanceB;
+
+	@BeforeEach
+	public void setUp() {
+		GpsUtil gpsUtil = new GpsUtil();
+		InternalTestHelper.setInternalUserNumber(0);
+		tourGuideService = new TourGuideService(gpsUtil, new RewardsService(gpsUtil, new RewardCentral()), 1, false);
+		shardingA = newShardingService(INSTANCE_A, INSTANCE_A + "," + INSTANCE_B);
+		shardingB = newShardingService(INSTANCE_B, INSTANCE_A + "," + INSTANCE_B + "," + INSTANCE_C);
+		instanceA = newInstance(shardingA);
+		instanceB = newInstance(shardingB);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		shardingA.stop();
+		shardingB.stop();
+	}
+
+	@Test
+	public void localUserIsServed() throws Exception {
+		String userName = findUser(INSTANCE_A, INSTANCE_A);
+
+		instanceA.perform(get("/getLocation").param("userName", userName))
+				.andExpect(status().isOk())
+				.andExpect(content().string(userName));
+	}
+
+	@Test
+	public void remoteUserIsRedirectedOnce() throws Exception {
+		String userName = findUser(INSTANCE_B, INSTANCE_B);
+
+		instanceA.perform(get("/getLocation?userName=" + userName))
+				.andExpect(status().isTemporaryRedirect())
+				.andExpect(header().string("Location", INSTANCE_B + "/getLocation?userName=" + userName + "&"
+						+ ShardRoutingInterceptor.HOP_PARAMETER + "=1"));
+		instanceB.perform(get("/getLocation").param("userName", userName).param(ShardRoutingInterceptor.HOP_PARAMETER, "1"))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	public void redirectedRequestIsNotRedirectedAgain() throws Exception {
+		// the rings disagree: A sends the user to B, B would send it on to C
+		String userName = findUser(INSTANCE_B, INSTANCE_C);
+
+		instanceA.perform(get("/getLocation").param("userName", userName))
+				.andExpect(status().isTemporaryRedirect());
+		instanceB.perform(get("/getLocation").param("userName", userName).param(ShardRoutingInterceptor.HOP_PARAMETER, "1"))
+				.andExpect(status().isServiceUnavailable())
+				.andExpect(header().string("Retry-After", "10"));
+		instanceB.perform(get("/getLocation").param("userName", userName).header(ShardRoutingInterceptor.HOP_HEADER, "1"))
+				.andExpect(status().isServiceUnavailable());
+		instanceB.perform(get("/getLocation").param("userName", userName))
+				.andExpect(status().isTemporaryRedirect());
+	}
+
+	private ShardingService newShardingService(String self, String members) {
+		ShardingService shardingService = new ShardingService(tourGuideService, true, self, members, "", 10);
+		shardingService.start();
+		return shardingService;
+	}
+
+	private MockMvc newInstance(ShardingService shardingService) {
+		return MockMvcBuilders.standaloneSetup(new EchoController())
+				.addInterceptors(new ShardRoutingInterceptor(shardingService))
+				.build();
+	}
+
+	private String findUser(String ownerOnA, String ownerOnB) {
+		for (int i = 0; ; i++) {
+			String userName = "user" + i;
+			if (shardingA.ownerOf(userName).equals(ownerOnA) && shardingB.ownerOf(userName).equals(ownerOnB)) {
+				return userName;
+			}
+		}
+	}
+
+	@RestController
+	static class EchoController {
+		@GetMapping("/getLocation")
+		public String getLocation(@RequestParam String userName) {
+			return userName;
+		}
+	}
+}
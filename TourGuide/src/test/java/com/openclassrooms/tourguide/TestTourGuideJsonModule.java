@@ -0,0 +1,56 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.dto.NearbyAttractionDto;
+import com.openclassrooms.tourguide.json.TourGuideJsonModule;
+import com.openclassrooms.tourguide.user.UserReward;
+import tripPricer.Provider;
+
+public class TestTourGuideJsonModule {
+
+	private final ObjectMapper reflectionMapper = new ObjectMapper()
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+	private final ObjectMapper moduleMapper = new ObjectMapper()
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+			.registerModule(new TourGuideJsonModule());
+
+	@Test
+	public void userRewardsMatchReflectionOutput() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		List<Attraction> attractions = gpsUtil.getAttractions();
+		UUID userId = UUID.randomUUID();
+		List<UserReward> userRewards = List.of(
+				new UserReward(new VisitedLocation(userId, new Location(33.8, -117.9), new Date()), attractions.get(0), 42),
+				new UserReward(new VisitedLocation(userId, new Location(35.1, -110.2), new Date()), attractions.get(1), 7),
+				new UserReward(new VisitedLocation(userId, new Location(33.8, -117.9), new Date()), attractions.get(0), 42));
+
+		assertEquals(reflectionMapper.readTree(reflectionMapper.writeValueAsString(userRewards)),
+				moduleMapper.readTree(moduleMapper.writeValueAsString(userRewards)));
+	}
+
+	@Test
+	public void providersAndNearbyAttractionsMatchReflectionOutput() throws Exception {
+		List<Provider> providers = List.of(new Provider(UUID.randomUUID(), "Sunny Days", 499.99));
+		List<NearbyAttractionDto> nearbyAttractions = List.of(
+				new NearbyAttractionDto("Disneyland", 33.817595, -117.922008, 33.8, -117.9, 1.5, 120));
+
+		assertEquals(reflectionMapper.readTree(reflectionMapper.writeValueAsString(providers)),
+				moduleMapper.readTree(moduleMapper.writeValueAsString(providers)));
+		assertEquals(reflectionMapper.readTree(reflectionMapper.writeValueAsString(nearbyAttractions)),
+				moduleMapper.readTree(moduleMapper.writeValueAsString(nearbyAttractions)));
+	}
+}
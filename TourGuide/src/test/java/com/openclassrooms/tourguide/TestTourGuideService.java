@@ -1,6 +1,8 @@
 package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.List;
@@ -16,6 +18,7 @@ import rewardCentral.RewardCentral;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.TripDealsService;
 import com.openclassrooms.tourguide.user.User;
 import tripPricer.Provider;
 
@@ -92,6 +95,48 @@ public class TestTourGuideService {
 		assertEquals(user.getUserId(), visitedLocation.userId);
 	}
 
+	@Test
+	public void trackUsersInBatch() throws ExecutionException, InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User user2 = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com");
+		List<VisitedLocation> visitedLocations = tourGuideService.trackUserLocationsBatchAsync(List.of(user, user2)).get();
+
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(user.getUserId(), visitedLocations.get(0).userId);
+		assertEquals(user2.getUserId(), visitedLocations.get(1).userId);
+		assertSame(visitedLocations.get(1), user2.getLastVisitedLocation());
+	}
+
+	@Test
+	public void stationaryFixOnlyRefreshesTimestamp() throws ExecutionException, InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, 1, false);
+		// every random fix is within this distance of the previous one
+		tourGuideService.setMovementThreshold(100000, 3600000);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation first = tourGuideService.trackUserLocationAsync(user).get();
+		VisitedLocation second = tourGuideService.trackUserLocationAsync(user).get();
+
+		assertEquals(1, user.getVisitedLocations().size());
+		assertSame(first, user.getLastVisitedLocation());
+		assertEquals(second.timeVisited, user.getLatestLocationTimestamp());
+		assertEquals(1, tourGuideService.getStationaryFixCount());
+
+		tourGuideService.setMovementThreshold(100000, 0);
+		tourGuideService.trackUserLocationAsync(user).get();
+
+		assertEquals(2, user.getVisitedLocations().size());
+	}
+
 	@Test
 	public void getNearbyAttractions() throws ExecutionException, InterruptedException {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -124,4 +169,57 @@ public class TestTourGuideService {
 		assertEquals(10, providers.size());
 	}
 
+	@Test
+	public void getTripDealsServesPrecomputedDeals() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+		List<Provider> providers = tourGuideService.getTripDeals(user);
+		List<Provider> precomputedProviders = tourGuideService.getTripDeals(user);
+
+		tourGuideService.tracker.stopTracking();
+
+		assertSame(providers, precomputedProviders);
+	}
+
+	@Test
+	public void getTripDealsPricesAgainWhenPreferencesChanged() {
+		TripDealsService tripDealsService = new TripDealsService();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+		List<Provider> providers = tripDealsService.getTripDeals(user);
+		user.getUserPreferences().setNumberOfChildren(user.getUserPreferences().getNumberOfChildren() + 1);
+		List<Provider> repricedProviders = tripDealsService.getTripDeals(user);
+		tripDealsService.shutdown();
+
+		assertNotSame(providers, repricedProviders);
+		assertSame(repricedProviders, user.getTripDeals());
+	}
+
+	@Test
+	public void getTripOptionsRanksVariantsByPrice() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+		List<TripDealsService.TripOption> options = tourGuideService.getTripOptions(user);
+
+		tourGuideService.tracker.stopTracking();
+
+		assertTrue(options.stream().anyMatch(option -> option.variant().tripDuration() == 2));
+		assertTrue(options.stream().anyMatch(option -> option.variant().numberOfChildren() == 1));
+		for (int i = 1; i < options.size(); i++) {
+			assertTrue(options.get(i - 1).price() <= options.get(i).price());
+		}
+		assertEquals(options.size(), options.stream()
+				.map(option -> option.providerName() + option.variant()).distinct().count());
+	}
+
 }
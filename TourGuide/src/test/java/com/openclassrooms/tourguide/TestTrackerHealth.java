@@ -0,0 +1,111 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.TripDealsService;
+import com.openclassrooms.tourguide.tracker.TrackerHealthIndicator;
+import com.openclassrooms.tourguide.tracker.TrackerMetrics;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestTrackerHealth {
+
+	@Test
+	public void healthGoesDownWhenLocationsAreStale() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < 100; i++) {
+			User user = new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com");
+			// NORMAL users are polled every 5 minutes at most, two of them were last seen 20 minutes ago
+			long age = i < 2 ? TimeUnit.MINUTES.toMillis(20) : TimeUnit.MINUTES.toMillis(1);
+			user.setLatestLocationTimestamp(new Date(now - age));
+			tourGuideService.addUser(user);
+		}
+
+		TrackerMetrics.Staleness staleness = tourGuideService.tracker.getMetrics().getStaleness();
+
+		assertEquals(100, staleness.users());
+		assertEquals(1, staleness.p50AgeMillis() / TimeUnit.MINUTES.toMillis(1));
+		assertEquals(20, staleness.p99AgeMillis() / TimeUnit.MINUTES.toMillis(1));
+		assertEquals(Status.DOWN, new TrackerHealthIndicator(tourGuideService, 3).health().getStatus());
+		assertEquals(Status.UP, new TrackerHealthIndicator(tourGuideService, 5).health().getStatus());
+	}
+
+	@Test
+	public void metricsOfAStoppedTrackerAreReplaced() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		MeterRegistry registry = new SimpleMeterRegistry();
+		TourGuideService first = new TourGuideService(gpsUtil, rewardsService, new TripDealsService(), 1, false, registry);
+		first.tracker.stopTracking();
+
+		assertTrue(registry.getMeters().isEmpty());
+
+		TourGuideService second = new TourGuideService(gpsUtil, rewardsService, new TripDealsService(), 1, false, registry);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.setLatestLocationTimestamp(new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(20)));
+		second.addUser(user);
+
+		double ageSeconds = registry.get("tourguide.tracker.location.age").tag("quantile", "0.5").gauge().value();
+		second.tracker.stopTracking();
+
+		assertEquals(20, Math.round(ageSeconds / 60));
+	}
+
+	@Test
+	public void usersOfAFailedBatchAreTrackedAgain() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		AtomicBoolean failing = new AtomicBoolean();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral()) {
+			@Override
+			public List<Attraction> getAttractions() {
+				if (failing.get()) {
+					throw new IllegalStateException("attractions unavailable");
+				}
+				return super.getAttractions();
+			}
+		};
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, 1, false);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		tourGuideService.addUser(user);
+		failing.set(true);
+
+		long start = System.currentTimeMillis();
+		tourGuideService.tracker.startTracking();
+		TrackerMetrics metrics = tourGuideService.tracker.getMetrics();
+		for (int i = 0; i < 100 && metrics.getTrackedUsersPerSecond() == 0; i++) {
+			Thread.sleep(100);
+		}
+		tourGuideService.tracker.stopTracking();
+
+		// the cycle is recorded and the user is polled again after its minimum interval
+		assertTrue(metrics.getTrackedUsersPerSecond() > 0);
+		long minInterval = user.getTrackingPriority().getMinIntervalMillis();
+		assertEquals(minInterval, tourGuideService.tracker.getScheduler().getIntervals().get(user.getUserId()));
+		assertTrue(tourGuideService.tracker.getScheduler().nextDueTime() >= start + minInterval);
+	}
+}
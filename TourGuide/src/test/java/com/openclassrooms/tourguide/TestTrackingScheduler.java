@@ -0,0 +1,90 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.tracker.TrackingPriority;
+import com.openclassrooms.tourguide.tracker.TrackingScheduler;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestTrackingScheduler {
+
+	@Test
+	public void pollDueReturnsOnlyDueUsers() {
+		TrackingScheduler scheduler = new TrackingScheduler(new RewardsService(new GpsUtil(), new RewardCentral())::getDistance);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User user2 = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com");
+
+		assertTrue(scheduler.scheduleIfAbsent(user, 1000));
+		assertTrue(scheduler.scheduleIfAbsent(user2, 5000));
+		assertFalse(scheduler.scheduleIfAbsent(user, 0));
+
+		List<User> dueUsers = scheduler.pollDue(2000);
+
+		assertEquals(List.of(user), dueUsers);
+		assertEquals(5000, scheduler.nextDueTime());
+	}
+
+	@Test
+	public void idleUserBacksOffUpToMaxInterval() {
+		TrackingScheduler scheduler = new TrackingScheduler(new RewardsService(new GpsUtil(), new RewardCentral())::getDistance);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation location = new VisitedLocation(user.getUserId(), new Location(33.817595, -117.922008), new Date());
+		scheduler.scheduleIfAbsent(user, 0);
+		scheduler.pollDue(0);
+
+		long now = System.currentTimeMillis();
+		long dueTime = now;
+		for (int i = 0; i < 10; i++) {
+			dueTime = scheduler.reschedule(user, location, location, now);
+			scheduler.pollDue(dueTime);
+		}
+
+		assertEquals(now + TrackingPriority.NORMAL.getMaxIntervalMillis(), dueTime);
+	}
+
+	@Test
+	public void movingUserIsPolledAtMinInterval() {
+		TrackingScheduler scheduler = new TrackingScheduler(new RewardsService(new GpsUtil(), new RewardCentral())::getDistance);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.setTrackingPriority(TrackingPriority.HIGH);
+		VisitedLocation previous = new VisitedLocation(user.getUserId(), new Location(33.817595, -117.922008), new Date());
+		VisitedLocation current = new VisitedLocation(user.getUserId(), new Location(34.817595, -117.922008), new Date());
+		scheduler.scheduleIfAbsent(user, 0);
+		scheduler.pollDue(0);
+
+		long now = System.currentTimeMillis();
+		long dueTime = scheduler.reschedule(user, previous, current, now);
+
+		assertEquals(now + TrackingPriority.HIGH.getMinIntervalMillis(), dueTime);
+	}
+
+	@Test
+	public void activeUserIsBroughtForwardToMinInterval() {
+		TrackingScheduler scheduler = new TrackingScheduler((first, second) -> 0);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		long now = System.currentTimeMillis();
+		scheduler.scheduleIfAbsent(user, now + TrackingPriority.NORMAL.getMaxIntervalMillis());
+
+		user.setTrackingPriority(TrackingPriority.HIGH);
+		assertTrue(scheduler.expedite(user, now));
+		assertFalse(scheduler.expedite(user, now));
+
+		long dueTime = now + TrackingPriority.HIGH.getMinIntervalMillis();
+		assertEquals(dueTime, scheduler.nextDueTime());
+		assertEquals(List.of(user), scheduler.pollDue(now + TrackingPriority.NORMAL.getMaxIntervalMillis()));
+		assertEquals(Long.MAX_VALUE, scheduler.nextDueTime());
+	}
+}
@@ -0,0 +1,177 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import gpsUtil.GpsUtil;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.dto.UserImportReportDto;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.UserImportService;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestUserImportService {
+
+	@Test
+	public void importNdjsonInSeveralChunks() throws IOException {
+		TourGuideService tourGuideService = newTourGuideService();
+		UserImportService importService = new UserImportService(tourGuideService, new ObjectMapper());
+
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < 2500; i++) {
+			body.append("{\"userName\":\"user").append(i).append("\",\"phoneNumber\":\"000\",\"emailAddress\":\"user")
+					.append(i).append("@tourGuide.com\",\"preferences\":{\"tripDuration\":3,\"numberOfChildren\":2},")
+					.append("\"history\":[{\"latitude\":33.8,\"longitude\":-117.9,\"timeVisited\":1700000000000}]}\n");
+		}
+		body.append("{\"userName\":\"user7\",\"emailAddress\":\"again@tourGuide.com\"}\n");
+		body.append("{\"userName\":\"broken\",\"emailAddress\":\"broken\"}\n");
+		body.append("not json\n");
+
+		UserImportReportDto report = importService.importUsers(stream(body.toString()), UserImportService.Format.NDJSON);
+		importService.shutdown();
+
+		assertEquals(2500, report.getImported());
+		assertEquals(3, report.getRejected());
+		assertEquals(2501, report.getErrors().get(0).getLine());
+		assertEquals(2503, report.getErrors().get(2).getLine());
+		User user = tourGuideService.getUser("user1234");
+		assertNotNull(user);
+		assertEquals(3, user.getUserPreferences().getTripDuration());
+		assertEquals(2, user.getUserPreferences().getNumberOfChildren());
+		assertEquals(1, user.getVisitedLocations().size());
+	}
+
+	@Test
+	public void importCsvWithHistory() throws IOException {
+		TourGuideService tourGuideService = newTourGuideService();
+		UserImportService importService = new UserImportService(tourGuideService, new ObjectMapper());
+
+		String body = "userName,phoneNumber,emailAddress,tripDuration,ticketQuantity,numberOfAdults,numberOfChildren,history\n"
+				+ "jon,000,jon@tourGuide.com,2,1,2,0,33.8:-117.9:1700000000000|34.0:-118.0:1700000060000\n"
+				+ "jane,000,jane@tourGuide.com\n"
+				+ "lost,000,lost@tourGuide.com,1,1,1,0,95:0:1700000000000\n";
+
+		UserImportReportDto report = importService.importUsers(stream(body), UserImportService.Format.CSV);
+		importService.shutdown();
+
+		assertEquals(2, report.getImported());
+		assertEquals(1, report.getRejected());
+		assertEquals(4, report.getErrors().get(0).getLine());
+		assertTrue(report.getErrors().get(0).getMessage().contains("history"));
+		assertEquals(2, tourGuideService.getUser("jon").getVisitedLocations().size());
+		assertNotNull(tourGuideService.getUser("jane"));
+	}
+
+	@Test
+	public void rejectOutOfRangeNumbers() throws IOException {
+		TourGuideService tourGuideService = newTourGuideService();
+		UserImportService importService = new UserImportService(tourGuideService, new ObjectMapper());
+
+		String body = "userName,phoneNumber,emailAddress,tripDuration,ticketQuantity,numberOfAdults,numberOfChildren\n"
+				+ "jon,000,jon@tourGuide.com,4294967297,1,1,0\n"
+				+ "jane,000,jane@tourGuide.com,2,1,1,0\n";
+		UserImportReportDto csvReport = importService.importUsers(stream(body), UserImportService.Format.CSV);
+		UserImportReportDto jsonReport = importService.importUsers(stream(
+				"{\"userName\":\"jack\",\"emailAddress\":\"jack@tourGuide.com\",\"preferences\":{\"tripDuration\":4294967297}}\n"),
+				UserImportService.Format.NDJSON);
+		importService.shutdown();
+
+		assertEquals(1, csvReport.getImported());
+		assertEquals(2, csvReport.getErrors().get(0).getLine());
+		assertEquals(0, jsonReport.getImported());
+		assertEquals(1, jsonReport.getRejected());
+	}
+
+	@Test
+	public void reportLowestRejectedLines() throws IOException {
+		TourGuideService tourGuideService = newTourGuideService();
+		UserImportService importService = new UserImportService(tourGuideService, new ObjectMapper());
+
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			body.append("not json\n");
+		}
+		UserImportReportDto report = importService.importUsers(stream(body.toString()), UserImportService.Format.NDJSON);
+		importService.shutdown();
+
+		assertEquals(5000, report.getRejected());
+		assertEquals(1000, report.getErrors().size());
+		assertEquals(1, report.getErrors().get(0).getLine());
+		assertEquals(1000, report.getErrors().get(999).getLine());
+	}
+
+	@Test
+	public void rejectLinesLongerThanTheMaximum() throws IOException {
+		TourGuideService tourGuideService = newTourGuideService();
+		UserImportService importService = new UserImportService(tourGuideService, new ObjectMapper());
+		importService.setMaxLineLength(100);
+
+		String body = "jon,000,jon@tourGuide.com\r\n"
+				+ "jane,000," + "x".repeat(20000) + "@tourGuide.com\r\n"
+				+ "jack,000,jack@tourGuide.com";
+		UserImportReportDto report = importService.importUsers(stream("userName,phoneNumber,emailAddress\n" + body),
+				UserImportService.Format.CSV);
+		importService.shutdown();
+
+		assertEquals(2, report.getImported());
+		assertEquals(1, report.getRejected());
+		assertEquals(3, report.getErrors().get(0).getLine());
+		assertNotNull(tourGuideService.getUser("jack"));
+		assertEquals("jon@tourGuide.com", tourGuideService.getUser("jon").getEmailAddress());
+	}
+
+	@Test
+	public void skipUsersOwnedByAnotherInstance() throws IOException {
+		TourGuideService tourGuideService = newTourGuideService();
+		tourGuideService.setUserOwnership(user -> !user.getUserName().equals("jane"));
+		UserImportService importService = new UserImportService(tourGuideService, new ObjectMapper());
+
+		String body = "userName,phoneNumber,emailAddress\n"
+				+ "jon,000,jon@tourGuide.com\n"
+				+ "jane,000,jane@tourGuide.com\n";
+		UserImportReportDto report = importService.importUsers(stream(body), UserImportService.Format.CSV);
+		importService.shutdown();
+
+		assertEquals(1, report.getImported());
+		assertEquals(0, report.getRejected());
+		assertEquals(1, report.getSkipped());
+		assertNull(tourGuideService.getUser("jane"));
+	}
+
+	@Test
+	public void importFailsOnceShutDown() {
+		UserImportService importService = new UserImportService(newTourGuideService(), new ObjectMapper());
+		importService.shutdown();
+
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(RejectedExecutionException.class,
+				() -> importService.importUsers(stream("{\"userName\":\"jon\",\"emailAddress\":\"jon@tourGuide.com\"}\n"),
+						UserImportService.Format.NDJSON)));
+	}
+
+	private TourGuideService newTourGuideService() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		return new TourGuideService(gpsUtil, rewardsService, 1, false);
+	}
+
+	private ByteArrayInputStream stream(String body) {
+		return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+	}
+}
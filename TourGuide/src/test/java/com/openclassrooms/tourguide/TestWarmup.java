@@ -0,0 +1,59 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.WarmupHealthIndicator;
+import com.openclassrooms.tourguide.service.WarmupService;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestWarmup {
+
+	@Test
+	public void readinessWaitsForWarmup() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, 1, false);
+
+		User located = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		located.addToVisitedLocations(new VisitedLocation(located.getUserId(), new Location(33.8, -117.9), new Date()));
+		tourGuideService.addUser(located);
+		User locatedEarlier = new User(UUID.randomUUID(), "jim", "000", "jim@tourGuide.com");
+		locatedEarlier.addToVisitedLocations(new VisitedLocation(locatedEarlier.getUserId(), new Location(40.7, -74.0),
+				new Date(System.currentTimeMillis() - 86400000)));
+		tourGuideService.addUser(locatedEarlier);
+		tourGuideService.addUser(new User(UUID.randomUUID(), "jane", "000", "jane@tourGuide.com"));
+
+		WarmupService warmupService = new WarmupService(tourGuideService, rewardsService, true, 60, 1);
+		WarmupHealthIndicator healthIndicator = new WarmupHealthIndicator(warmupService);
+		assertEquals(Status.OUT_OF_SERVICE, healthIndicator.health().getStatus());
+
+		warmupService.start();
+		for (int i = 0; i < 600 && !warmupService.isReady(); i++) {
+			Thread.sleep(100);
+		}
+
+		assertTrue(warmupService.isReady());
+		assertEquals(WarmupService.State.COMPLETED, warmupService.getState());
+		assertEquals(1, warmupService.getWarmedUsers());
+		assertEquals(Status.UP, healthIndicator.health().getStatus());
+		// only the cell of the prefilled user is cached, not those of the synthetic locations
+		assertEquals(1, rewardsService.getNearbyAttractionCache().size());
+		// the synthetic users of the warm-up are not counted
+		assertTrue(rewardsService.getLeaderboard().getTop(10).isEmpty());
+	}
+}
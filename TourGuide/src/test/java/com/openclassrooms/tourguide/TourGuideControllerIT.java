@@ -1,13 +1,28 @@
 package com.openclassrooms.tourguide;
 
+import java.util.Date;
+
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.TrackingPriority;
+import com.openclassrooms.tourguide.user.User;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
@@ -17,11 +32,109 @@ public class TourGuideControllerIT {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private TourGuideService tourGuideService;
+
     @Test
     public void getNearbyAttractions_return5Attractions() throws Exception {
         mockMvc.perform(get("/getNearbyAttractions").
                         param("userName", "internalUser0"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(5)));
+                .andExpect(jsonPath("$", hasSize(5)))
+                .andExpect(header().string("Server-Timing", containsString("rewardCentral;dur=")))
+                .andExpect(header().exists("X-Request-Id"));
+    }
+
+    @Test
+    public void setTrackingPriority_changeUserPriority() throws Exception {
+        mockMvc.perform(post("/admin/users/trackingPriority").
+                        param("userName", "internalUser1").
+                        param("priority", "HIGH"))
+                .andExpect(status().isOk());
+
+        assertEquals(TrackingPriority.HIGH, tourGuideService.getUser("internalUser1").getTrackingPriority());
+        mockMvc.perform(post("/admin/users/trackingPriority").
+                        param("userName", "nobody").
+                        param("priority", "HIGH"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void getLocationAt_returnLatestLocationBeforeTime() throws Exception {
+        mockMvc.perform(get("/getLocationAt").
+                        param("userName", "internalUser0").
+                        param("time", "2999-01-01T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.location.latitude").isNumber());
+    }
+
+    @Test
+    public void getAllCurrentLocations_streamOneLinePerUser() throws Exception {
+        MvcResult result = mockMvc.perform(get("/getAllCurrentLocations"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("X-Snapshot-Time"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(tourGuideService.getAllUsers().size(), lines.length);
+        assertTrue(lines[0].startsWith("{\"userId\":"));
+    }
+
+    @Test
+    public void getAllCurrentLocations_filterLocationsSince() throws Exception {
+        MvcResult result = mockMvc.perform(get("/getAllCurrentLocations").
+                        param("since", "2999-01-01T00:00:00Z"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    public void getAllCurrentLocations_streamUsersChangedSinceSequence() throws Exception {
+        MvcResult snapshot = mockMvc.perform(get("/getAllCurrentLocations"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String sequence = mockMvc.perform(asyncDispatch(snapshot))
+                .andReturn().getResponse().getHeader("X-Snapshot-Sequence");
+
+        // a fix visited long ago but recorded after the snapshot
+        User user = tourGuideService.getUser("internalUser2");
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(33.8, -117.9), new Date(0)));
+
+        MvcResult result = mockMvc.perform(get("/getAllCurrentLocations").
+                        param("sinceSequence", sequence))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(body.contains(user.getUserId().toString()));
+        assertTrue(body.split("\n").length < tourGuideService.getAllUsers().size());
+    }
+
+    @Test
+    public void importUsers_reportRejectedLines() throws Exception {
+        String body = "{\"userName\":\"importedUser\",\"phoneNumber\":\"000\",\"emailAddress\":\"imported@tourGuide.com\","
+                + "\"history\":[{\"latitude\":33.8,\"longitude\":-117.9,\"timeVisited\":1700000000000}]}\n"
+                + "{\"userName\":\"internalUser0\",\"emailAddress\":\"internal@tourGuide.com\"}\n";
+        mockMvc.perform(post("/admin/users/import").
+                        contentType("application/x-ndjson").
+                        content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(2));
+    }
+
+    @Test
+    public void readiness_includeWarmup() throws Exception {
+        mockMvc.perform(get("/actuator/health/readiness"))
+                .andExpect(jsonPath("$.components.warmup.status").exists());
     }
 }